@@ -0,0 +1,67 @@
+package com.example.common.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// Java 21 virtual threads, reached reflectively so the shared code still compiles with the
+// default Java 17 toolchain. Callers check isSupported() and fall back to platform threads.
+public final class VirtualThreads {
+    private static final Method NEW_PER_TASK_EXECUTOR;
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method perTask = null, ofVirtual = null, name = null, factory = null;
+        try {
+            perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            // resolve against the public interface; the builder implementation class is not accessible
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            perTask = null;
+        }
+        NEW_PER_TASK_EXECUTOR = perTask;
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    // One new virtual thread per submitted task; there is no pool to size.
+    public static ExecutorService newThreadPerTaskExecutor() {
+        requireSupported();
+        try {
+            return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    // Factory for virtual threads named prefix0, prefix1, ...
+    public static ThreadFactory threadFactory(String prefix) {
+        requireSupported();
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread factory", e);
+        }
+    }
+
+    private static void requireSupported() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer (running "
+                + Runtime.version() + ")");
+        }
+    }
+}
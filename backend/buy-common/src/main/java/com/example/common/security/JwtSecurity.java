@@ -0,0 +1,35 @@
+package com.example.common.security;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+// Builds the stateless, JWT-authenticated filter chain every service uses. Services only
+// differ in which API paths are public; CORS comes from the shared corsConfigurationSource.
+// Actuator health and info are public; metrics and the rest need the operator token
+// (OPERATOR_TOKEN, sent as X-Operator-Token), which no user account can obtain.
+public final class JwtSecurity {
+    private JwtSecurity() {}
+
+    public static SecurityFilterChain filterChain(HttpSecurity http, String... publicPaths) throws Exception {
+        String operatorToken = http.getSharedObject(ApplicationContext.class).getEnvironment().getProperty("OPERATOR_TOKEN", "");
+        JwtAuthFilter jwtAuthFilter = new JwtAuthFilter(operatorToken);
+        http
+            .cors()
+            .and()
+            .csrf().disable()
+            .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            .and()
+            .authorizeHttpRequests()
+            .requestMatchers(publicPaths).permitAll()
+            .requestMatchers("/actuator/health/**", "/actuator/info").permitAll()
+            // metrics name users' traffic and auth failures: operators only
+            .requestMatchers("/actuator/**").hasRole(JwtAuthFilter.OPERATOR_ROLE)
+            .anyRequest().authenticated()
+            .and()
+            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+        return http.build();
+    }
+}
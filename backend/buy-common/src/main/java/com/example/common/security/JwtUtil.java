@@ -0,0 +1,97 @@
+package com.example.common.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+
+// Single JWT issue/verify path shared by every service.
+public final class JwtUtil {
+    // In a real deployment this should be stored in a secret manager
+    // Read from environment variable JWT_SECRET for better flexibility in different environments.
+    // Falls back to the original hard-coded value for quick local demos.
+    private static final String SECRET = (System.getenv("JWT_SECRET") != null && !System.getenv("JWT_SECRET").isBlank())
+        ? System.getenv("JWT_SECRET")
+        : "ReplaceThisWithASecureRandomSecretKeyOfSufficientLength123!";
+    private static final long EXP_MS = 1000L * 60 * 60 * 24; // 24h
+    // Max number of verified tokens remembered per process; override with JWT_CACHE_SIZE.
+    private static final int CACHE_SIZE = cacheSize();
+
+    // Key derivation and parser construction happen once; both are immutable and thread-safe.
+    private static final Key SIGNING_KEY = Keys.hmacShaKeyFor(SECRET.getBytes());
+    private static final JwtParser PARSER = Jwts.parserBuilder().setSigningKey(SIGNING_KEY).build();
+
+    // LRU of tokens that already passed signature verification, keyed by the token's SHA-256
+    // so raw tokens are not retained. Entries are only honoured until the token expires.
+    private static final Map<String, CachedClaims> VERIFIED = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    private record CachedClaims(Claims claims, long expiresAt) {}
+
+    // Registered on the global registry, which Spring Boot bridges into /actuator/metrics.
+    private static final Counter CACHE_HITS = Metrics.counter("auth.jwt.cache", "result", "hit");
+    private static final Counter CACHE_MISSES = Metrics.counter("auth.jwt.cache", "result", "miss");
+
+    private JwtUtil() {}
+
+    public static String generateToken(String userId, String role) {
+        return Jwts.builder()
+                .setClaims(Map.of("sub", userId, "role", role))
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + EXP_MS))
+                .signWith(SIGNING_KEY, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    // Returned claims may be shared between requests presenting the same token: treat as read-only.
+    public static Claims parseToken(String token) {
+        String key = hash(token);
+        CachedClaims hit = VERIFIED.get(key);
+        if (hit != null) {
+            if (hit.expiresAt() > System.currentTimeMillis()) {
+                CACHE_HITS.increment();
+                return hit.claims();
+            }
+            VERIFIED.remove(key);
+        }
+        CACHE_MISSES.increment();
+        Claims claims = PARSER.parseClaimsJws(token).getBody();
+        Date exp = claims.getExpiration();
+        // tokens without an expiry are verified every time rather than cached forever
+        if (exp != null) VERIFIED.put(key, new CachedClaims(claims, exp.getTime()));
+        return claims;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static int cacheSize() {
+        String v = System.getenv("JWT_CACHE_SIZE");
+        if (v == null || v.isBlank()) return 10_000;
+        return Math.max(0, Integer.parseInt(v.trim()));
+    }
+}
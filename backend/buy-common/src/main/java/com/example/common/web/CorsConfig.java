@@ -0,0 +1,47 @@
+package com.example.common.web;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+
+// CORS policy shared by all services; a service can still declare its own
+// corsConfigurationSource bean to override it.
+@AutoConfiguration
+public class CorsConfig {
+    // matched by name: Spring MVC's HandlerMappingIntrospector is itself a CorsConfigurationSource
+    @Bean
+    @ConditionalOnMissingBean(name = "corsConfigurationSource")
+    public CorsConfigurationSource corsConfigurationSource() {
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", policy());
+        return source;
+    }
+
+    // The shared policy itself, for stacks that need their own source type (e.g. WebFlux).
+    public static CorsConfiguration policy() {
+        CorsConfiguration configuration = new CorsConfiguration();
+        // In production, restrict allowed origins. For local development allow localhost origins (with ports).
+        configuration.setAllowedOriginPatterns(List.of(
+            "http://localhost:4200",
+            "http://127.0.0.1:4200",
+            "https://localhost:4200",
+            "https://127.0.0.1:4200",
+            "http://localhost",
+            "http://127.0.0.1",
+            "https://localhost",
+            "https://127.0.0.1"
+        ));
+        configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "If-Match", "If-None-Match"));
+        // lets the frontend read versions for conditional writes
+        configuration.setExposedHeaders(List.of("ETag"));
+        // Allow credentials in development so Authorization header and cookies can be sent.
+        configuration.setAllowCredentials(true);
+        return configuration;
+    }
+}
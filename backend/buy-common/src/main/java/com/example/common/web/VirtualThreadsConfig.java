@@ -0,0 +1,51 @@
+package com.example.common.web;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import com.example.common.concurrent.VirtualThreads;
+
+// Opt-in (app.threads.virtual=true, Java 21 runtime): Tomcat hands every request to its own
+// virtual thread instead of the 200-thread platform pool, and Spring's applicationTaskExecutor
+// (MVC async, StreamingResponseBody) does the same. Blocking Mongo and file I/O then park the
+// virtual thread rather than an OS thread. On an older JVM the flag is logged and ignored.
+@AutoConfiguration(before = TaskExecutionAutoConfiguration.class)
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+@Conditional(VirtualThreadsConfig.Supported.class)
+public class VirtualThreadsConfig {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Serving requests on virtual threads");
+        return handler -> handler.setExecutor(VirtualThreads.newThreadPerTaskExecutor());
+    }
+
+    // Same bean name as Boot's pool so MVC async processing picks it up instead.
+    @Bean(name = { "applicationTaskExecutor", "taskExecutor" })
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor());
+    }
+
+    static class Supported implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            if (VirtualThreads.isSupported()) return true;
+            log.warn("app.threads.virtual=true but this JVM ({}) has no virtual threads; using platform threads",
+                Runtime.version());
+            return false;
+        }
+    }
+}
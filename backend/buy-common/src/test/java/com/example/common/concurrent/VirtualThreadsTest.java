@@ -0,0 +1,34 @@
+package com.example.common.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTest {
+
+    @Test
+    void isSupported_ShouldFollowRuntimeVersion() {
+        assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+    }
+
+    @Test
+    void factories_ShouldCreateVirtualThreadsOrFailClearly() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            assertThrows(UnsupportedOperationException.class, VirtualThreads::newThreadPerTaskExecutor);
+            assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.threadFactory("x-"));
+            return;
+        }
+        Thread t = VirtualThreads.threadFactory("worker-").newThread(() -> { });
+        assertEquals("worker-0", t.getName());
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(t));
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+        Boolean virtual = executor.submit(() -> (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+            .get(5, TimeUnit.SECONDS);
+        assertTrue(virtual);
+        executor.shutdown();
+    }
+}
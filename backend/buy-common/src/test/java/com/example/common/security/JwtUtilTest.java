@@ -0,0 +1,40 @@
+package com.example.common.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    @Test
+    void parseToken_GeneratedToken_ShouldReturnClaims() {
+        String token = JwtUtil.generateToken("user-1", "SELLER");
+
+        Claims claims = JwtUtil.parseToken(token);
+
+        assertEquals("user-1", claims.getSubject());
+        assertEquals("SELLER", claims.get("role"));
+        assertNotNull(claims.getExpiration());
+    }
+
+    @Test
+    void parseToken_RepeatedToken_ShouldBeServedFromCache() {
+        String token = JwtUtil.generateToken("user-2", "CLIENT");
+
+        Claims first = JwtUtil.parseToken(token);
+        Claims second = JwtUtil.parseToken(token);
+
+        assertSame(first, second, "second parse of a verified token should reuse cached claims");
+    }
+
+    @Test
+    void parseToken_TamperedSignature_ShouldBeRejected() {
+        String token = JwtUtil.generateToken("user-3", "CLIENT");
+        JwtUtil.parseToken(token); // warm the cache with the genuine token
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(SignatureException.class, () -> JwtUtil.parseToken(tampered));
+    }
+}
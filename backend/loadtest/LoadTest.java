@@ -0,0 +1,97 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop HTTP load generator: N concurrent clients each send the next request as soon as the
+// previous one completes, for a fixed duration after a warm-up. Prints throughput and latency
+// percentiles so the platform-thread and virtual-thread modes can be compared on the same box.
+//
+//   java LoadTest.java <url> [concurrency=500] [seconds=30] [warmupSeconds=10] [header=value ...]
+//
+// No dependencies; runs with the JDK source launcher (Java 17+).
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: java LoadTest.java <url> [concurrency] [seconds] [warmupSeconds] [header=value ...]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET();
+        for (int i = 4; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            builder.header(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+        HttpRequest request = builder.build();
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(warmup).toNanos();
+        long end = warmupEnd + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int c = 0; c < concurrency; c++) {
+            long[][] holder = { new long[1024] };
+            int[] count = { 0 };
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        long start = System.nanoTime();
+                        if (start >= end) break;
+                        boolean ok;
+                        try {
+                            HttpResponse<Void> r = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            ok = r.statusCode() < 500;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long finished = System.nanoTime();
+                        if (start < warmupEnd || finished > end) continue;
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count[0] == holder[0].length) holder[0] = Arrays.copyOf(holder[0], count[0] * 2);
+                        holder[0][count[0]++] = finished - start;
+                    }
+                } finally {
+                    synchronized (perClient) {
+                        perClient.add(Arrays.copyOf(holder[0], count[0]));
+                    }
+                    done.countDown();
+                }
+            }, "client-" + c);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double rps = all.length / (double) seconds;
+        System.out.printf("url=%s concurrency=%d duration=%ds%n", uri, concurrency, seconds);
+        System.out.printf("requests=%d errors=%d throughput=%.1f req/s%n", all.length, errors.get(), rps);
+        if (all.length > 0) {
+            System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                pct(all, 50), pct(all, 90), pct(all, 99), all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e6;
+    }
+}
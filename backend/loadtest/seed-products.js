@@ -0,0 +1,38 @@
+// Synthetic catalogue for the search benchmark: 1M products (override with N) with names and
+// descriptions drawn from a small vocabulary so term frequencies look like a real shop.
+//
+//   mongosh mongodb://localhost:27017/productdb --eval "var N=1000000" seed-products.js
+//
+// Start product-service once afterwards (auto-index-creation builds the text index), or create
+// the indexes first so the bulk load does not fight the index build.
+const total = typeof N === 'number' ? N : 1000000;
+const batchSize = 10000;
+const adjectives = ['red', 'blue', 'green', 'black', 'white', 'wooden', 'steel', 'vintage', 'modern', 'compact',
+  'portable', 'wireless', 'organic', 'handmade', 'premium', 'classic', 'smart', 'silent', 'foldable', 'heavy'];
+const nouns = ['lamp', 'chair', 'desk', 'table', 'sofa', 'kettle', 'speaker', 'headphones', 'backpack', 'jacket',
+  'watch', 'camera', 'keyboard', 'monitor', 'bottle', 'mug', 'blender', 'drill', 'bicycle', 'tent'];
+const words = ['durable', 'easy', 'clean', 'gift', 'office', 'kitchen', 'outdoor', 'travel', 'home', 'garden',
+  'battery', 'cotton', 'leather', 'glass', 'ceramic', 'bamboo', 'warranty', 'fast', 'shipping', 'eco'];
+const sellers = Array.from({ length: 2000 }, (_, i) => 'seller-' + i);
+const pick = a => a[Math.floor(Math.random() * a.length)];
+
+db.products.drop();
+for (let done = 0; done < total; done += batchSize) {
+  const docs = [];
+  for (let i = 0; i < Math.min(batchSize, total - done); i++) {
+    const desc = Array.from({ length: 12 }, () => pick(words)).join(' ');
+    docs.push({
+      name: pick(adjectives) + ' ' + pick(nouns) + ' ' + (done + i),
+      description: pick(adjectives) + ' ' + pick(nouns) + ' ' + desc,
+      price: Math.round(Math.random() * 100000) / 100,
+      quantity: Math.floor(Math.random() * 500),
+      userId: pick(sellers),
+      imageIds: [],
+      updatedAt: new Date(),
+      version: NumberLong(0),
+    });
+  }
+  db.products.insertMany(docs, { ordered: false });
+  if ((done / batchSize) % 10 === 0) print('inserted ' + (done + docs.length));
+}
+print('done: ' + db.products.countDocuments() + ' products');
@@ -1,41 +1,81 @@
 package com.example.mediaservice.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
-import org.springframework.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.mediaservice.model.Media;
 import com.example.mediaservice.repository.MediaRepository;
+import com.example.mediaservice.storage.BlobStore;
+import com.example.mediaservice.storage.ImageVariants;
+import com.example.mediaservice.storage.MediaStorage;
+import com.example.mediaservice.storage.UploadWriter;
+import com.example.mediaservice.sync.ProductSyncOutbox;
+import com.example.mediaservice.web.FileResponder;
+import com.example.mediaservice.web.HotFileCache;
+import com.example.mediaservice.web.MediaUrls;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/media")
 public class MediaController {
+    private static final Logger log = LoggerFactory.getLogger(MediaController.class);
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue();
+
     private final MediaRepository repo;
-    private final Path uploadDir = Paths.get("uploads");
+    private final FileResponder fileResponder;
+    private final HotFileCache hotFiles;
+    private final ProductSyncOutbox productSync;
+    private final MediaUrls urls;
+    private final UploadWriter uploads;
+    private final ImageVariants variants;
+    private final BlobStore blobs;
+    private final MediaStorage storage;
+    private final int maxBatchProducts;
 
-    public MediaController(MediaRepository repo) throws IOException {
+    public MediaController(MediaRepository repo, FileResponder fileResponder, HotFileCache hotFiles,
+                           ProductSyncOutbox productSync, MediaUrls urls, UploadWriter uploads, ImageVariants variants, BlobStore blobs,
+                           MediaStorage storage, @Value("${media.batch.max-products:100}") int maxBatchProducts) {
         this.repo = repo;
-        if (!Files.exists(uploadDir)) Files.createDirectories(uploadDir);
+        this.fileResponder = fileResponder;
+        this.hotFiles = hotFiles;
+        this.productSync = productSync;
+        this.urls = urls;
+        this.uploads = uploads;
+        this.variants = variants;
+        this.blobs = blobs;
+        this.storage = storage;
+        this.maxBatchProducts = maxBatchProducts;
     }
 
     @PostMapping("/upload")
@@ -49,85 +89,192 @@ public class MediaController {
 
             // validate file
             if (file.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error", "Empty file"));
-            if (file.getSize() > 2L * 1024 * 1024) return ResponseEntity.badRequest().body(Map.of("error", "File too large (max 2MB)"));
-            String contentType = file.getContentType();
-            if (contentType == null || !(contentType.equalsIgnoreCase("image/png") || contentType.equalsIgnoreCase("image/jpeg") || contentType.equalsIgnoreCase("image/gif"))) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Unsupported file type"));
+            if (file.getSize() > uploads.maxBytes()) return tooLarge();
+            try (InputStream in = file.getInputStream()) {
+                return ResponseEntity.ok(save(uploads.stage(in), productId, auth.getName()));
             }
+        } catch (UploadWriter.Rejected e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Upload failed", "detail", e.getMessage()));
+        }
+    }
 
-            String original = StringUtils.cleanPath(file.getOriginalFilename());
-            String ext = "";
-            int i = original.lastIndexOf('.');
-            if (i >= 0) ext = original.substring(i);
-            String filename = UUID.randomUUID().toString() + ext;
-            Path target = uploadDir.resolve(filename);
-            Files.copy(file.getInputStream(), target);
-            String mediaBase = System.getenv("MEDIA_SERVICE_URL");
-            if (mediaBase == null || mediaBase.isBlank()) mediaBase = "http://localhost:8083";
-            String publicPath = mediaBase + "/api/media/file/" + filename;
-            Media m = new Media(publicPath, productId);
-            repo.save(m);
-
-            // Try to notify product-service to append this media id to the product's imageIds.
-            try {
-                String internalToken = System.getenv("INTERNAL_TOKEN");
-                if (internalToken != null && !internalToken.isBlank()) {
-                    RestTemplate rt = new RestTemplate();
-                    HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.APPLICATION_JSON);
-                    headers.set("X-Internal-Token", internalToken);
-                    Map<String, String> body = Map.of("mediaId", m.getId());
-                    HttpEntity<Map<String, String>> request = new HttpEntity<>(body, headers);
-                    String productBase = System.getenv("PRODUCT_SERVICE_URL");
-                    if (productBase == null || productBase.isBlank()) productBase = "http://product-service:8082";
-                    // best-effort: we don't fail the upload if this internal call fails
-                    rt.postForEntity(productBase + "/api/products/" + productId + "/images", request, String.class);
-                }
-            } catch (Exception ex) {
-                // ignore - upload itself succeeded, but we couldn't sync product imageIds
+    // Streaming variant: the image is the raw request body (Content-Type image/png, image/jpeg,
+    // image/gif or application/octet-stream) and goes straight from the socket to its final
+    // file in one pass, without multipart buffering in memory or a container temp file.
+    @PostMapping(value = "/upload", consumes = { "image/png", "image/jpeg", "image/gif", "application/octet-stream" })
+    public ResponseEntity<?> uploadStream(@RequestParam("productId") String productId, HttpServletRequest request) {
+        try {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
+                return ResponseEntity.status(403).body(Map.of("error", "Only sellers can upload media"));
             }
-
-            return ResponseEntity.ok(m);
+            // refuse a declared oversize body before reading any of it
+            if (request.getContentLengthLong() > uploads.maxBytes()) {
+                return tooLarge();
+            }
+            return ResponseEntity.ok(save(uploads.stage(request.getInputStream()), productId, auth.getName()));
+        } catch (UploadWriter.Rejected e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Upload failed", "detail", e.getMessage()));
         }
     }
 
+    private ResponseEntity<?> tooLarge() {
+        return ResponseEntity.badRequest().body(Map.of("error", "File too large (max " + uploads.maxBytes() / (1024 * 1024) + "MB)"));
+    }
+
+    // Identical bytes are stored once: a duplicate upload only adds a reference and the Media
+    // document, and its variants already exist.
+    private Media save(UploadWriter.Staged staged, String productId, String ownerId) throws IOException {
+        try {
+            blobs.acquire(staged.filename(), staged.size(), staged.contentType());
+        } catch (RuntimeException e) {
+            uploads.discard(staged);
+            throw e;
+        }
+        boolean fresh;
+        Media m = new Media(urls.publicUrl(staged.filename()), productId);
+        try {
+            fresh = storage.put(staged.filename(), staged.temp());
+            m.setContentType(staged.contentType());
+            m.setSize(staged.size());
+            m.setSha256(staged.sha256());
+            m.setBlob(staged.filename());
+            m.setOwnerId(ownerId);
+            // variants still being generated are recorded on this document too (by imagePath)
+            if (!fresh) repo.findFirstByBlob(staged.filename()).ifPresent(other -> m.setVariants(other.getVariants()));
+            repo.save(m);
+        } catch (RuntimeException | IOException e) {
+            // no document holds the reference taken above, so give it back
+            uploads.discard(staged);
+            drop(staged.filename());
+            throw e;
+        }
+
+        // Tell product-service to append this media id to the product's imageIds. The
+        // notification is persisted and delivered asynchronously with retries.
+        productSync.enqueue(m.getId(), productId);
+        if (fresh) variants.generateAsync(staged.filename());
+        return m;
+    }
+
+    // Deletes a media document; the stored file (and its variants) goes with the last reference.
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable String id) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only sellers can delete media"));
+        }
+        var opt = repo.findById(id);
+        if (opt.isEmpty()) return ResponseEntity.notFound().build();
+        Media m = opt.get();
+        if (!auth.getName().equals(m.getOwnerId())) {
+            return ResponseEntity.status(403).body(Map.of("error", "Cannot delete media uploaded by someone else"));
+        }
+        repo.deleteById(id);
+        // undo the attach done on upload, through the same outbox
+        if (m.getProductId() != null) productSync.enqueueDetach(id, m.getProductId());
+        if (m.getBlob() != null) drop(m.getBlob());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Releases one reference to a stored file; the last one deletes it along with its variants.
+    private void drop(String blob) {
+        if (blobs.release(blob) != 0) return;
+        try {
+            if (blobs.collect(blob)) {
+                hotFiles.invalidate(blob);
+                variants.delete(blob);
+            }
+        } catch (IOException e) {
+            // no document points at it any more; an orphaned file is harmless
+            log.warn("Could not delete file {}: {}", blob, e.getMessage());
+        }
+    }
+
     @GetMapping("/product/{productId}")
     public List<Media> byProduct(@PathVariable String productId) {
         List<Media> list = repo.findByProductId(productId);
         // normalize stored imagePath to public URLs if needed
-        String mediaBase = System.getenv("MEDIA_SERVICE_URL");
-        if (mediaBase == null || mediaBase.isBlank()) mediaBase = "http://localhost:8083";
-        for (Media m : list) {
-            String p = m.getImagePath();
-            if (p == null) continue;
-            if (!p.startsWith("http://") && !p.startsWith("https://")) {
-                // assume original stored a filesystem path like "uploads/..." or absolute path; extract filename
-                try {
-                    Path pp = Paths.get(p);
-                    String fname = pp.getFileName().toString();
-                    m.setImagePath(mediaBase + "/api/media/file/" + fname);
-                } catch (Exception ex) {
-                    // fallback: leave as-is
-                }
-            }
-        }
+        for (Media m : list) m.setImagePath(urls.normalize(m.getImagePath()));
         return list;
     }
 
+    // Media for many products (e.g. a product grid) from one indexed $in query.
+    // Every requested id is a key in the result; products without media map to an empty list.
+    @GetMapping("/products")
+    public ResponseEntity<?> byProducts(@RequestParam("ids") List<String> productIds) {
+        if (productIds.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error", "No product ids"));
+        if (productIds.size() > maxBatchProducts) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Too many product ids (max " + maxBatchProducts + ")"));
+        }
+        Map<String, List<Media>> result = new LinkedHashMap<>();
+        for (String id : productIds) result.put(id, new ArrayList<>());
+        for (Media m : repo.findByProductIdIn(new LinkedHashSet<>(productIds))) {
+            m.setImagePath(urls.normalize(m.getImagePath()));
+            result.get(m.getProductId()).add(m);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/products")
+    public ResponseEntity<?> byProductsPost(@RequestBody List<String> productIds) {
+        return byProducts(productIds);
+    }
+
+    // Size of a stored file as recorded at upload, without touching the store. Null if unknown.
+    private Long storedSize(String filename) {
+        return repo.findFirstByBlob(filename).map(Media::getSize).orElse(null);
+    }
+
+    // `w` asks for a downscaled variant (snapped to media.variants.widths); the original is
+    // served when the image is already that small or no variant can be produced in time.
+    // The format is negotiated from Accept: the smallest acceptable re-encoding wins.
     @GetMapping("/file/{filename:.+}")
-    public ResponseEntity<?> file(@PathVariable String filename) {
+    public ResponseEntity<?> file(@PathVariable String filename,
+                                  @RequestParam(value = "w", required = false) Integer w,
+                                  HttpServletRequest request, HttpServletResponse response) {
         try {
-            Path f = uploadDir.resolve(filename).normalize();
-            if (!Files.exists(f)) return ResponseEntity.notFound().build();
-            String contentType = Files.probeContentType(f);
-            if (contentType == null) contentType = "application/octet-stream";
-            byte[] data = Files.readAllBytes(f);
-            return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType(contentType)).body(data);
+            String accept = request.getHeader(HttpHeaders.ACCEPT);
+            ImageVariants.Choice choice = variants.remembered(filename, w, accept);
+            // only plain names are looked up, so nothing outside the store can be reached
+            MediaStorage.Slice packed = null;
+            Path original = null;
+            if (choice == null) {
+                packed = storage.slice(filename);
+                Long originalSize = packed != null ? Long.valueOf(packed.data().remaining()) : storedSize(filename);
+                if (originalSize == null) {
+                    // uploads from before sizes were recorded
+                    original = storage.fetch(filename);
+                    if (original == null) return ResponseEntity.notFound().build();
+                    originalSize = Files.size(original);
+                }
+                choice = variants.choose(filename, w, originalSize, accept);
+            }
+            // the bytes behind this URL depend on Accept; shared caches must key on it
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            // a digest-named file can never change, so neither can anything derived from it
+            if (CONTENT_ADDRESSED.matcher(filename).matches()) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+            }
+            Path f = choice.file();
+            if (f != null) return fileResponder.serve(f, f.getFileName().toString(), request, response);
+            // the original: memory first, so a hot file never costs a store lookup (or S3 download)
+            HotFileCache.CachedFile hot = hotFiles.get(filename);
+            if (hot != null) return fileResponder.serve(hot.data(), hot.lastModified(), filename, request, response);
+            if (packed == null) packed = storage.slice(filename);
+            if (packed != null) return fileResponder.serve(packed.data(), packed.lastModified(), filename, request, response);
+            if (original == null) original = storage.fetch(filename);
+            if (original == null) return ResponseEntity.notFound().build();
+            return fileResponder.serve(original, filename, request, response);
+        } catch (NoSuchFileException e) {
+            // deleted while we looked at it
+            return ResponseEntity.notFound().build();
         } catch (IOException e) {
             return ResponseEntity.status(500).body(Map.of("error", "Could not read file"));
         }
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,26 @@
 package com.example.mediaservice.model;
 
+import java.util.List;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "media")
 public class Media {
     @Id
     private String id;
+    @Indexed // generated variants are recorded by it (addVariantsByImagePath)
     private String imagePath;
+    @Indexed
     private String productId;
+    private String contentType; // detected from the file's magic bytes
+    private Long size;
+    private String sha256; // hex digest of the stored bytes
+    private List<Integer> variants; // widths available through ?w=
+    @Indexed(sparse = true) // duplicate uploads look up an existing Media by it
+    private String blob; // stored filename (MediaBlob id); null for uploads before content addressing
+    private String ownerId; // the seller who uploaded it
 
     public Media() {}
 
@@ -23,4 +35,16 @@ public class Media {
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
     public String getProductId() { return productId; }
     public void setProductId(String productId) { this.productId = productId; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public List<Integer> getVariants() { return variants; }
+    public void setVariants(List<Integer> variants) { this.variants = variants; }
+    public String getBlob() { return blob; }
+    public void setBlob(String blob) { this.blob = blob; }
+    public String getOwnerId() { return ownerId; }
+    public void setOwnerId(String ownerId) { this.ownerId = ownerId; }
 }
\ No newline at end of file
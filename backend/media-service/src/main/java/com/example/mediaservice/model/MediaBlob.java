@@ -0,0 +1,32 @@
+package com.example.mediaservice.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// One stored file, named by its content digest ("<sha256>.<ext>"), shared by every Media
+// document with the same bytes. `refs` counts those documents; the file is deleted when it
+// drops to zero.
+@Document(collection = "media_blobs")
+public class MediaBlob {
+    @Id
+    private String id; // the stored filename
+    private long refs;
+    private long size;
+    private String contentType;
+    private Instant createdAt;
+
+    public MediaBlob() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public long getRefs() { return refs; }
+    public void setRefs(long refs) { this.refs = refs; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,50 @@
+package com.example.mediaservice.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Outbox entry: "tell product-service that mediaId belongs to productId" (or, with detach, that
+// it no longer does). Written next to the Media document on upload or delete and removed once
+// product-service has acknowledged it, so pending notifications survive restarts.
+@Document(collection = "product_sync_outbox")
+public class ProductSyncTask {
+    @Id
+    private String id;
+    private String mediaId;
+    private String productId;
+    private boolean detach;
+    private int attempts;
+    @Indexed
+    private Instant nextAttemptAt; // also acts as a lease while a worker is delivering it
+    private Instant createdAt;
+    private String lastError;
+
+    public ProductSyncTask() {}
+
+    public ProductSyncTask(String mediaId, String productId, Instant now) {
+        this.mediaId = mediaId;
+        this.productId = productId;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getMediaId() { return mediaId; }
+    public void setMediaId(String mediaId) { this.mediaId = mediaId; }
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+    public boolean isDetach() { return detach; }
+    public void setDetach(boolean detach) { this.detach = detach; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
@@ -2,9 +2,22 @@ package com.example.mediaservice.repository;
 
 import com.example.mediaservice.model.Media;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface MediaRepository extends MongoRepository<Media, String> {
     List<Media> findByProductId(String productId);
+
+    List<Media> findByProductIdIn(Collection<String> productIds);
+
+    Optional<Media> findFirstByBlob(String blob);
+
+    // Records generated variant widths without rewriting the rest of the documents.
+    @Query("{ 'imagePath': ?0 }")
+    @Update("{ '$addToSet': { 'variants': { '$each': ?1 } } }")
+    void addVariantsByImagePath(String imagePath, List<Integer> widths);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.example.mediaservice.repository;
+
+import com.example.mediaservice.model.ProductSyncTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ProductSyncTaskRepository extends MongoRepository<ProductSyncTask, String> {
+    List<ProductSyncTask> findByNextAttemptAtLessThanEqualOrderByNextAttemptAt(Instant now, Pageable page);
+}
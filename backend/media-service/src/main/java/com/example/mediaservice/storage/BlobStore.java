@@ -0,0 +1,68 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.mediaservice.model.MediaBlob;
+
+// Reference counts for content-addressed files (see MediaBlob). An upload acquires a reference
+// before publishing its file; deleting a Media releases one, and the last release collects the
+// file. Collection is safe against a concurrent upload of the same bytes on any instance: the
+// file is first moved aside and only deleted if no new reference appeared meanwhile.
+// A crash in between leaves "<name>.deleting" behind, which nothing references.
+@Component
+public class BlobStore {
+    private static final String TRASH_SUFFIX = ".deleting";
+
+    private final MongoTemplate mongo;
+    private final MediaStorage storage;
+
+    public BlobStore(MongoTemplate mongo, MediaStorage storage) {
+        this.mongo = mongo;
+        this.storage = storage;
+    }
+
+    public void acquire(String filename, long size, String contentType) {
+        mongo.upsert(byId(filename), new Update().inc("refs", 1)
+            .setOnInsert("size", size)
+            .setOnInsert("contentType", contentType)
+            .setOnInsert("createdAt", Instant.now()), MediaBlob.class);
+    }
+
+    // Returns the references left, or -1 when the blob is unknown.
+    public long release(String filename) {
+        MediaBlob blob = mongo.findAndModify(Query.query(Criteria.where("id").is(filename).and("refs").gt(0)),
+            new Update().inc("refs", -1), FindAndModifyOptions.options().returnNew(true), MediaBlob.class);
+        return blob == null ? -1 : blob.getRefs();
+    }
+
+    // Deletes an unreferenced blob and its file. Returns false if it gained a reference meanwhile.
+    public boolean collect(String filename) throws IOException {
+        MediaBlob removed = mongo.findAndRemove(Query.query(Criteria.where("id").is(filename).and("refs").is(0)), MediaBlob.class);
+        if (removed == null) return false;
+        String trash = filename + TRASH_SUFFIX;
+        if (!storage.move(filename, trash)) return true;
+        if (mongo.exists(byId(filename), MediaBlob.class)) {
+            // the same bytes were uploaded again while we were deleting; keep the file
+            if (storage.exists(filename)) {
+                storage.delete(trash);
+            } else {
+                storage.move(trash, filename);
+            }
+            return false;
+        }
+        storage.delete(trash);
+        return true;
+    }
+
+    private static Query byId(String filename) {
+        return Query.query(Criteria.where("id").is(filename));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.mediaservice.storage;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import org.w3c.dom.Node;
+
+// Re-encoded images carry no metadata, so the EXIF orientation a camera relies on would be lost
+// with it. This reads the tag from a JPEG's APP1 segment and applies it to the pixels instead.
+final class ExifOrientation {
+    private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {}
+
+    // 1 (as stored) .. 8 per the EXIF spec; 1 when absent or unreadable.
+    static int read(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA.equals(metadata.getNativeMetadataFormatName())) return 1;
+        Node markers = find(metadata.getAsTree(JPEG_METADATA), "markerSequence");
+        if (markers == null) return 1;
+        for (Node n = markers.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (!"unknown".equals(n.getNodeName()) || !(n instanceof IIOMetadataNode node)) continue;
+            if (!String.valueOf(APP1).equals(node.getAttribute("MarkerTag"))) continue;
+            if (node.getUserObject() instanceof byte[] data) {
+                int o = parse(data);
+                if (o != 1) return o;
+            }
+        }
+        return 1;
+    }
+
+    // APP1 payload: "Exif\0\0", then a TIFF header and IFD0, where the tag is a SHORT entry.
+    static int parse(byte[] d) {
+        if (d.length < 14 || d[0] != 'E' || d[1] != 'x' || d[2] != 'i' || d[3] != 'f') return 1;
+        int tiff = 6;
+        boolean le = d[tiff] == 'I';
+        int ifd = tiff + u32(d, tiff + 4, le);
+        if (ifd < tiff + 8 || ifd + 2 > d.length) return 1;
+        int entries = u16(d, ifd, le);
+        for (int i = 0; i < entries; i++) {
+            int e = ifd + 2 + i * 12;
+            if (e + 12 > d.length) return 1;
+            if (u16(d, e, le) == ORIENTATION_TAG) {
+                int value = u16(d, e + 8, le);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    // Returns the image as it should be displayed for the given orientation.
+    static BufferedImage apply(BufferedImage src, int orientation) {
+        if (orientation <= 1 || orientation > 8) return src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform t = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // mirror horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // rotate 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // mirror vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transverse
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // rotate 270 clockwise
+        };
+        int type = src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage out = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.drawImage(src, t, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private static Node find(Node node, String name) {
+        if (name.equals(node.getNodeName())) return node;
+        for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling()) {
+            Node found = find(c, name);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static int u16(byte[] d, int i, boolean le) {
+        int a = d[i] & 0xff;
+        int b = d[i + 1] & 0xff;
+        return le ? a | b << 8 : a << 8 | b;
+    }
+
+    private static int u32(byte[] d, int i, boolean le) {
+        return le ? u16(d, i, true) | u16(d, i + 2, true) << 16 : u16(d, i, false) << 16 | u16(d, i + 2, false);
+    }
+}
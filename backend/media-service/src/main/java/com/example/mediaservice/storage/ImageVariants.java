@@ -0,0 +1,504 @@
+package com.example.mediaservice.storage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.example.mediaservice.repository.MediaRepository;
+import com.example.mediaservice.web.MediaUrls;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+// Downscaled copies of uploaded images at a fixed set of widths (media.variants.widths), stored
+// on local disk under uploads/variants/ (sharded like the originals, see Shards) and served by GET /api/media/file/{filename}?w=. All widths
+// are generated right after an upload, from a single decode, and recorded on Media.variants;
+// files uploaded before this existed get theirs lazily on the first ?w= request.
+// Decoding and scaling are CPU bound, so they run on a fixed pool sized to the cores with a
+// bounded queue. When it is full, or a lazy request waits longer than media.variants.max-wait,
+// the original is served instead. Exposed as media.variants.generate and media.variants.rejected.
+// Each rendition (the original and every width) also gets smaller re-encodings without
+// metadata: JPEG for opaque images and WebP when a writer is available. negotiate() picks
+// the smallest one the client's Accept header allows; choose() remembers that pick per width
+// and set of acceptable encodings until the file's renditions change.
+// Variants are derived data: with a shared MediaStorage each instance keeps its own and
+// regenerates missing ones on demand.
+@Component
+public class ImageVariants {
+    private static final Logger log = LoggerFactory.getLogger(ImageVariants.class);
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final String FULL = "-full";
+    // candidates per rendition; null stands for the rendition itself
+    private static final String[] ENCODINGS = { null, ".webp", ".jpg", ".png" };
+    private static final Set<String> MODERN = Set.of("image/webp");
+    private static final List<String> TYPES = List.of("image/webp", "image/jpeg", "image/png", "image/gif");
+
+    // What to serve for one (width, Accept) combination; a null file is the original.
+    public record Choice(Path file) {}
+
+    private final MediaStorage storage;
+    private final Path variantDir;
+    private final List<Integer> widths;
+    private final long maxPixels;
+    private final Duration maxWait;
+    private final MediaRepository repo;
+    private final ThreadPoolExecutor executor;
+    private final MediaUrls urls;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    // variant names for which the original is served as is, and originals already queued for re-encoding
+    private final Cache<String, Boolean> unscaled = Caffeine.newBuilder().maximumSize(10_000).build();
+    // per original: choices keyed by snapped width and acceptable-encodings bitmask (see key())
+    private final Cache<String, Map<Integer, Choice>> choices = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(Duration.ofMinutes(10))
+        .build();
+    // bitmask of acceptable TYPES per Accept header; browsers send only a handful of distinct ones
+    private final Cache<String, Integer> acceptClasses = Caffeine.newBuilder().maximumSize(1_000).build();
+    // WebP is only produced when a pure-Java ImageIO writer for it is on the classpath
+    private final boolean webp = ImageIO.getImageWritersByMIMEType("image/webp").hasNext();
+    private final Timer generateTimer;
+    private final Counter rejected;
+
+    public ImageVariants(@Value("${uploads.dir:uploads}") String dir,
+                         @Value("${media.variants.widths:200,400,800}") List<Integer> widths,
+                         @Value("${media.variants.threads:0}") int threads,
+                         @Value("${media.variants.queue-capacity:100}") int queueCapacity,
+                         @Value("${media.variants.max-wait:5s}") Duration maxWait,
+                         @Value("${media.variants.max-pixels:40000000}") long maxPixels,
+                         @Value("${media.storage.migrate:true}") boolean migrate,
+                         MediaStorage storage, MediaRepository repo, MediaUrls urls, MeterRegistry registry) throws IOException {
+        this.storage = storage;
+        this.variantDir = Paths.get(dir).resolve("variants");
+        this.widths = List.copyOf(new TreeSet<>(widths.stream().filter(w -> w > 0).toList()));
+        this.maxPixels = maxPixels;
+        this.maxWait = maxWait;
+        this.repo = repo;
+        this.urls = urls;
+        Files.createDirectories(variantDir);
+        // flat "<stem>-w400.png" from before sharding go next to their original's shard
+        if (migrate) Shards.migrateInBackground(variantDir, name -> name.substring(0, Math.max(0, name.lastIndexOf('-'))));
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            r -> {
+                Thread t = new Thread(r, "image-variants-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.generateTimer = Timer.builder("media.variants.generate")
+            .description("Time to decode an image and write its variants").register(registry);
+        this.rejected = Counter.builder("media.variants.rejected")
+            .description("Variant jobs shed because the pool was saturated").register(registry);
+    }
+
+    // The configured width to serve for a requested one: the smallest that is at least as wide,
+    // or the largest. Snapping keeps arbitrary ?w= values from filling the disk. 0 when disabled.
+    public int snap(int requested) {
+        if (widths.isEmpty()) return 0;
+        for (int w : widths) if (w >= requested) return w;
+        return widths.get(widths.size() - 1);
+    }
+
+    // Generates every configured width plus the full-size re-encodings in the background and
+    // records the widths on every media document sharing the file.
+    public void generateAsync(String filename) {
+        try {
+            executor.execute(() -> {
+                List<Integer> made = generate(filename, widths, true);
+                if (!made.isEmpty()) repo.addVariantsByImagePath(urls.publicUrl(filename), made);
+            });
+        } catch (RejectedExecutionException e) {
+            // the first ?w= request generates it instead
+            rejected.increment();
+        }
+    }
+
+    // The file to serve for `filename` at (snapped) width `w`: an existing variant or one
+    // generated now. Null when the image is already that small or no variant can be had in
+    // time; the caller then serves the original.
+    public Path variant(String filename, int w) {
+        int width = snap(w);
+        if (width == 0) return null;
+        Path target = variantPath(filename, width);
+        String key = target.getFileName().toString();
+        if (unscaled.getIfPresent(key) != null) return null;
+        if (Files.exists(target)) return target;
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> job = inFlight.putIfAbsent(key, mine);
+        if (job == null) {
+            job = mine;
+            try {
+                executor.execute(() -> {
+                    try {
+                        List<Integer> made = generate(filename, List.of(width), false);
+                        if (made.isEmpty()) {
+                            // already that small (or undecodable): remember to serve the original
+                            unscaled.put(key, Boolean.TRUE);
+                            mine.complete(null);
+                        } else {
+                            repo.addVariantsByImagePath(urls.publicUrl(filename), made);
+                            mine.complete(target);
+                        }
+                    } catch (RuntimeException e) {
+                        mine.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(key, mine);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                inFlight.remove(key, mine);
+                return null;
+            }
+        }
+        try {
+            return job.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // A previous choose() result for this request, or null when it has to be worked out again.
+    public Choice remembered(String filename, Integer w, String accept) {
+        Map<Integer, Choice> byRequest = choices.getIfPresent(filename);
+        return byRequest == null ? null : byRequest.get(key(w, accept));
+    }
+
+    // variant() and negotiate() in one step, remembered for the next identical request unless the
+    // answer is only temporary (a variant that is still being generated or was shed).
+    public Choice choose(String filename, Integer w, long originalSize, String accept) {
+        Path chosen = w != null && w > 0 ? variant(filename, w) : null;
+        Choice choice = new Choice(negotiate(filename, chosen, originalSize, accept));
+        boolean settled = chosen != null || w == null || w <= 0 || snap(w) == 0
+            || unscaled.getIfPresent(variantPath(filename, snap(w)).getFileName().toString()) != null;
+        if (settled) choices.get(filename, f -> new ConcurrentHashMap<>()).put(key(w, accept), choice);
+        return choice;
+    }
+
+    private int key(Integer w, String accept) {
+        int width = w != null && w > 0 ? snap(w) : 0;
+        return width << TYPES.size() | acceptClass(accept);
+    }
+
+    private int acceptClass(String accept) {
+        return acceptClasses.get(accept == null ? "" : accept, a -> {
+            List<MediaType> accepted = parseAccept(a);
+            int mask = 0;
+            for (int i = 0; i < TYPES.size(); i++) if (acceptable(TYPES.get(i), accepted)) mask |= 1 << i;
+            return mask;
+        });
+    }
+
+    // Removes every variant of an original that has been deleted.
+    public void delete(String filename) throws IOException {
+        choices.invalidate(filename);
+        // flat first, as the migration only ever moves files into shards
+        for (Path d : List.of(variantDir, Shards.dir(variantDir, filename))) {
+            if (!Files.isDirectory(d)) continue;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(d, stem(filename) + "-*")) {
+                for (Path f : files) Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    // Picks what to send for `chosen`, a width variant of `filename` or null for the original
+    // (`originalSize` bytes): the smallest of it and its re-encoded alternatives that the Accept
+    // header allows. Returns `chosen` (null again for the original) when that is itself the best.
+    // Originals uploaded before re-encoding existed get their alternatives queued on first request.
+    public Path negotiate(String filename, Path chosen, long originalSize, String accept) {
+        boolean original = chosen == null;
+        String name = original ? filename : chosen.getFileName().toString();
+        String stem = stem(name) + (original ? FULL : "");
+        Path alternatives = Shards.dir(variantDir, filename);
+        List<MediaType> accepted = parseAccept(accept);
+        Path best = chosen;
+        long bestSize = Long.MAX_VALUE;
+        boolean any = false;
+        for (String ext : ENCODINGS) {
+            Path candidate = ext == null ? chosen : alternatives.resolve(stem + ext);
+            if (ext != null && candidate.equals(chosen)) continue;
+            // one stat, and a missing alternative reads as 0 bytes rather than throwing
+            long size = candidate == null ? originalSize : candidate.toFile().length();
+            if (candidate != null && size == 0) continue;
+            if (ext != null) any = true;
+            String type = contentType(candidate == null ? name : candidate.getFileName().toString());
+            if (size < bestSize && acceptable(type, accepted)) {
+                best = candidate;
+                bestSize = size;
+            }
+        }
+        if (original && !any && unscaled.getIfPresent(stem) == null) {
+            unscaled.put(stem, Boolean.TRUE);
+            try {
+                executor.execute(() -> generate(name, List.of(), true));
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                unscaled.invalidate(stem);
+            }
+        }
+        return best;
+    }
+
+    private static List<MediaType> parseAccept(String accept) {
+        try {
+            return accept == null || accept.isBlank() ? List.of(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of(MediaType.ALL);
+        }
+    }
+
+    // Baseline formats are acceptable under wildcards; newer ones (WebP) only when the client
+    // names them, since some browsers send image/* without being able to decode them.
+    static boolean acceptable(String contentType, List<MediaType> accepted) {
+        MediaType type = MediaType.parseMediaType(contentType);
+        boolean explicitOnly = MODERN.contains(contentType);
+        MediaType match = null;
+        int specificity = -1;
+        for (MediaType range : accepted) {
+            if (!range.includes(type)) continue;
+            int s = (range.isWildcardType() ? 0 : 1) + (range.isWildcardSubtype() ? 0 : 1);
+            if (s > specificity) {
+                match = range;
+                specificity = s;
+            }
+        }
+        if (match == null || match.getQualityValue() == 0) return false;
+        return !explicitOnly || specificity == 2;
+    }
+
+    Path variantPath(String filename, int width) {
+        String ext = extension(filename);
+        // JPEG stays JPEG; everything else becomes PNG so transparency survives
+        String out = ext.equals(".jpg") || ext.equals(".jpeg") ? ".jpg" : ".png";
+        return Shards.dir(variantDir, filename).resolve(stem(filename) + "-w" + width + out);
+    }
+
+    // Decodes the original once and writes the requested widths that are narrower than it,
+    // scaling each from the previous (larger) one, each with its alternative encodings. With
+    // `full`, re-encodings of the original itself are written too (kept only if smaller).
+    // Returns the widths written.
+    private List<Integer> generate(String filename, List<Integer> wanted, boolean full) {
+        long started = System.nanoTime();
+        List<Integer> made = new ArrayList<>();
+        try {
+            Object source;
+            long size;
+            MediaStorage.Slice packed = storage.slice(filename);
+            if (packed != null) {
+                byte[] bytes = new byte[packed.data().remaining()];
+                packed.data().get(bytes);
+                source = new ByteArrayInputStream(bytes);
+                size = bytes.length;
+            } else {
+                Path file = storage.fetch(filename);
+                if (file == null) return made;
+                source = file.toFile();
+                size = Files.size(file);
+            }
+            Path out = Shards.dir(variantDir, filename);
+            Files.createDirectories(out);
+            BufferedImage image = decode(source, filename);
+            if (image == null) return made;
+            boolean jpegSource = isJpeg(filename);
+            // GIFs may be animated; a single re-encoded frame is no substitute for the original
+            if (full && !extension(filename).equals(".gif")) {
+                writeEncodings(image, out.resolve(stem(filename) + FULL), jpegSource, size);
+            }
+            List<Integer> descending = new ArrayList<>(wanted);
+            descending.sort((a, b) -> b - a);
+            for (int width : descending) {
+                if (width >= image.getWidth()) continue;
+                image = scale(image, width);
+                writeEncodings(image, out.resolve(stem(filename) + "-w" + width), jpegSource, 0);
+                made.add(width);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not create variants of {}: {}", filename, e.getMessage());
+        } finally {
+            // new renditions may beat what was chosen before
+            choices.invalidate(filename);
+            generateTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        return made;
+    }
+
+    // The primary encoding (JPEG for JPEG sources, PNG otherwise), a JPEG when an opaque PNG
+    // would be smaller that way, and WebP when an ImageIO WebP writer is on the classpath.
+    // With maxBytes > 0 an encoding that is not smaller than that is dropped again.
+    private void writeEncodings(BufferedImage image, Path stem, boolean jpegSource, long maxBytes) throws IOException {
+        List<String> formats = new ArrayList<>();
+        formats.add(jpegSource ? ".jpg" : ".png");
+        if (!jpegSource && !image.getColorModel().hasAlpha()) formats.add(".jpg");
+        if (webp) formats.add(".webp");
+        for (String ext : formats) {
+            Path target = stem.resolveSibling(stem.getFileName() + ext);
+            write(image, target);
+            if (maxBytes > 0 && Files.size(target) >= maxBytes) Files.delete(target);
+        }
+    }
+
+    // Reads the dimensions first so a tiny file declaring a huge canvas is never decoded.
+    private BufferedImage decode(Object source, String filename) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    log.warn("Skipping variants of {}: {}x{} exceeds media.variants.max-pixels", filename,
+                        reader.getWidth(0), reader.getHeight(0));
+                    return null;
+                }
+                BufferedImage image = reader.read(0);
+                return ExifOrientation.apply(image, ExifOrientation.read(reader.getImageMetadata(0)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Repeated halving with bilinear filtering until the target width; a single large
+    // bilinear step would skip most source pixels and alias.
+    static BufferedImage scale(BufferedImage src, int targetWidth) {
+        int type = src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = src;
+        int w = src.getWidth();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            int h = Math.max(1, (int) Math.round((double) src.getHeight() * w / src.getWidth()));
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w > targetWidth);
+        return current;
+    }
+
+    // Written without metadata, which drops EXIF, ICC and text chunks along with their bytes.
+    private void write(BufferedImage image, Path target) throws IOException {
+        String ext = extension(target.getFileName().toString());
+        boolean lossy = !ext.equals(".png");
+        int type = image.getType();
+        if (lossy && type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_BYTE_GRAY) {
+            image = toRgb(image);
+        }
+        Path tmp = Files.createTempFile(variantDir, ".variant-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp); ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+                ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType(target.getFileName().toString())).next();
+                try {
+                    writer.setOutput(ios);
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    if (lossy && param.canWriteCompressed()) {
+                        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                        if (param.getCompressionType() == null) param.setCompressionType(param.getCompressionTypes()[0]);
+                        param.setCompressionQuality(JPEG_QUALITY);
+                    }
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static BufferedImage toRgb(BufferedImage src) {
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(src, 0, 0, java.awt.Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private static String contentType(String filename) {
+        return switch (extension(filename)) {
+            case ".jpg", ".jpeg" -> "image/jpeg";
+            case ".webp" -> "image/webp";
+            case ".gif" -> "image/gif";
+            default -> "image/png";
+        };
+    }
+
+    private static boolean isJpeg(String filename) {
+        String ext = extension(filename);
+        return ext.equals(".jpg") || ext.equals(".jpeg");
+    }
+
+    private static String stem(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+
+    private static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(dot).toLowerCase(Locale.ROOT) : "";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Originals on the local filesystem under uploads.dir, sharded by name (see Shards). Files from
+// the old flat layout stay readable where they are and are moved into their shards by a
+// background pass at startup (media.storage.migrate).
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalMediaStorage implements MediaStorage {
+    private final Path root;
+
+    public LocalMediaStorage(@Value("${uploads.dir:uploads}") String dir,
+                             @Value("${media.storage.migrate:true}") boolean migrate) throws IOException {
+        this.root = Paths.get(dir);
+        Files.createDirectories(root);
+        if (migrate) Shards.migrateInBackground(root, UnaryOperator.identity());
+    }
+
+    @Override
+    public boolean put(String name, Path source) throws IOException {
+        if (exists(name)) {
+            Files.deleteIfExists(source);
+            return false;
+        }
+        Path target = path(name);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    @Override
+    public Path fetch(String name) {
+        if (!MediaStorage.isValidName(name)) return null;
+        Path sharded = path(name);
+        if (Files.isRegularFile(sharded)) return sharded;
+        Path flat = root.resolve(name);
+        if (Files.isRegularFile(flat)) return flat;
+        // moved into its shard between the two checks
+        return Files.isRegularFile(sharded) ? sharded : null;
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return fetch(name) != null;
+    }
+
+    @Override
+    public boolean move(String from, String to) throws IOException {
+        Path target = path(to);
+        Files.createDirectories(target.getParent());
+        // a second try covers the migration moving `from` while we look at it
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Path source = fetch(from);
+            if (source == null) return false;
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (NoSuchFileException e) {
+                // look again
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        if (!MediaStorage.isValidName(name)) return;
+        // flat first: the migration may move it into the shard, never the other way
+        Files.deleteIfExists(root.resolve(name));
+        Files.deleteIfExists(path(name));
+    }
+
+    Path path(String name) {
+        if (!MediaStorage.isValidName(name)) throw new IllegalArgumentException("Invalid media name: " + name);
+        return Shards.dir(root, name).resolve(name);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+// Where uploaded originals live, selected by media.storage.type: LocalMediaStorage (default,
+// sharded directories under uploads.dir), S3MediaStorage (any S3-compatible object store) or
+// PackedMediaStorage (small blobs packed into memory-mapped segment files).
+// Uploads are always staged to a local temp file first (UploadWriter) and handed over with
+// put(); reads get a local file back so FileResponder keeps its ranges and sendfile and
+// ImageVariants can decode it, or a mapped buffer from engines without a file per object.
+// Names are flat ("<sha256>.<ext>", or UUID names from before content addressing); how they
+// are laid out is up to the implementation.
+public interface MediaStorage {
+    // Stores the complete local file `source` as `name`, consuming it. Returns false, and just
+    // deletes `source`, when `name` is already stored.
+    boolean put(String name, Path source) throws IOException;
+
+    // A stored object's bytes, read-only, and when they were written.
+    record Slice(ByteBuffer data, long lastModified) {}
+
+    // A local file with the content of `name`, or null when nothing is stored under it (or it is
+    // stored without a file of its own; see slice()).
+    Path fetch(String name) throws IOException;
+
+    // The content of `name` as a buffer, for engines that keep objects packed rather than one
+    // file each (PackedMediaStorage). Null otherwise; callers then use fetch().
+    default Slice slice(String name) throws IOException {
+        return null;
+    }
+
+    boolean exists(String name) throws IOException;
+
+    // Renames a stored object. Returns false when `from` does not exist.
+    boolean move(String from, String to) throws IOException;
+
+    // Does nothing when `name` is not stored.
+    void delete(String name) throws IOException;
+
+    // Names are single path segments; anything else is never stored and never found.
+    static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && !name.startsWith(".") && !name.contains("..")
+            && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+}
@@ -0,0 +1,480 @@
+package com.example.mediaservice.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+// Small originals packed into large append-only segment files (media.storage.type=packed), so a
+// GET costs no inode, directory lookup or open/close: blobs are served as slices of memory-mapped
+// segments found through an in-memory index. Blobs over media.storage.packed.max-blob-bytes, and
+// files stored before the switch, stay files in the sharded LocalMediaStorage layout.
+//
+// A segment ("packs/segment-<id>.pack") is a run of records:
+//   int magic, byte kind (blob or delete), short name length, name (UTF-8), int target segment,
+//   long written at, int data length, data, int CRC32 of all of the above
+// Once it reaches media.storage.packed.segment-bytes it is sealed with a footer that repeats each
+// record's header with its data offset, followed by int count, long footer start, int footer
+// CRC32 and int magic. On startup the index is rebuilt from the footers alone; only the unsealed
+// last segment is scanned, and cut back to its last intact record.
+// A delete appends a record naming the segment of the blob it removes; the record is dead once
+// that segment is gone. Sealed segments whose dead share reaches media.storage.packed.compact-ratio
+// are compacted in the background: their live blobs, and delete records still needed, are
+// appended to the active segment and the file goes. Only sealed segments are mapped, once each;
+// reads from the active one use positional reads.
+// Exposed as media.packed.compaction and media.packed.segments.
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "packed")
+public class PackedMediaStorage implements MediaStorage {
+    private static final Logger log = LoggerFactory.getLogger(PackedMediaStorage.class);
+    private static final int RECORD_MAGIC = 0x4d424c42; // "MBLB"
+    private static final int FOOTER_MAGIC = 0x4d465452; // "MFTR"
+    private static final byte BLOB = 1;
+    private static final byte DELETE = 2;
+    // magic, kind, name length, target, written at, data length
+    private static final int FIXED_HEADER = 4 + 1 + 2 + 4 + 8 + 4;
+    private static final int TAIL = 4 + 8 + 4 + 4;
+
+    private record Location(int segment, int offset, int length, long writtenAt) {}
+
+    // A record as listed in a footer; `offset` is where its data starts.
+    private record Entry(byte kind, String name, int target, int offset, int length, long writtenAt) {}
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        volatile FileChannel channel;   // open while the segment is active
+        volatile MappedByteBuffer map;  // the whole file once sealed
+        volatile long size;             // bytes of records, excluding the footer
+        List<Entry> entries;            // records of the active segment, for its footer
+        final AtomicLong dead = new AtomicLong();
+        // bytes of delete records by the segment they target; guarded by the storage lock
+        final Map<Integer, Long> tombstones = new HashMap<>();
+
+        Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        boolean sealed() {
+            return channel == null;
+        }
+
+        // A slice of the mapping once sealed; a copy read from the channel while active. Sealing
+        // swaps the channel for the mapping under this segment's lock.
+        ByteBuffer read(int offset, int length) throws IOException {
+            MappedByteBuffer m = map;
+            if (m == null) {
+                synchronized (this) {
+                    m = map;
+                    if (m == null) {
+                        ByteBuffer b = ByteBuffer.allocate(length);
+                        while (b.hasRemaining()) {
+                            if (channel.read(b, offset + b.position()) < 0) throw new EOFException(path.toString());
+                        }
+                        return b.flip();
+                    }
+                }
+            }
+            return m.duplicate().limit(offset + length).position(offset).slice();
+        }
+    }
+
+    private final LocalMediaStorage files;
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBlobBytes;
+    private final double compactRatio;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Timer compactionTimer;
+    private Segment active;
+
+    public PackedMediaStorage(@Value("${uploads.dir:uploads}") String uploadsDir,
+                              @Value("${media.storage.migrate:true}") boolean migrate,
+                              @Value("${media.storage.packed.segment-bytes:268435456}") long segmentBytes,
+                              @Value("${media.storage.packed.max-blob-bytes:262144}") long maxBlobBytes,
+                              @Value("${media.storage.packed.compact-ratio:0.5}") double compactRatio,
+                              MeterRegistry registry) throws IOException {
+        this.files = new LocalMediaStorage(uploadsDir, migrate);
+        this.dir = Paths.get(uploadsDir).resolve("packs");
+        // offsets are ints and a segment is mapped as one buffer
+        this.segmentBytes = Math.max(1, Math.min(segmentBytes, Integer.MAX_VALUE / 2));
+        this.maxBlobBytes = Math.min(maxBlobBytes, this.segmentBytes);
+        this.compactRatio = compactRatio;
+        Files.createDirectories(dir);
+        long started = System.nanoTime();
+        open();
+        log.info("Indexed {} packed blobs in {} segments in {} ms", index.size(), segments.size(),
+            (System.nanoTime() - started) / 1_000_000);
+        this.compactionTimer = Timer.builder("media.packed.compaction")
+            .description("Time to compact one packed segment").register(registry);
+        Gauge.builder("media.packed.segments", segments, Map::size)
+            .description("Packed segment files, including the active one").register(registry);
+    }
+
+    @Override
+    public boolean put(String name, Path source) throws IOException {
+        if (exists(name)) {
+            Files.deleteIfExists(source);
+            return false;
+        }
+        if (Files.size(source) > maxBlobBytes) return files.put(name, source);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(source));
+        synchronized (this) {
+            if (!index.containsKey(name)) {
+                Location loc = append(BLOB, name, 0, data, System.currentTimeMillis());
+                // durable before anything can reference it
+                active.channel.force(false);
+                index.put(name, loc);
+                Files.deleteIfExists(source);
+                return true;
+            }
+        }
+        Files.deleteIfExists(source);
+        return false;
+    }
+
+    // Packed blobs have no file of their own; see slice().
+    @Override
+    public Path fetch(String name) throws IOException {
+        return index.containsKey(name) ? null : files.fetch(name);
+    }
+
+    @Override
+    public Slice slice(String name) throws IOException {
+        // a second look covers compaction moving the blob between the two lookups
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location loc = index.get(name);
+            if (loc == null) return null;
+            Segment s = segments.get(loc.segment());
+            if (s == null) continue;
+            return new Slice(s.read(loc.offset(), loc.length()), loc.writtenAt());
+        }
+        return null;
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return index.containsKey(name) || files.exists(name);
+    }
+
+    @Override
+    public boolean move(String from, String to) throws IOException {
+        synchronized (this) {
+            Location loc = index.get(from);
+            if (loc != null) {
+                ByteBuffer data = segments.get(loc.segment()).read(loc.offset(), loc.length());
+                Location moved = append(BLOB, to, 0, data, loc.writtenAt());
+                tombstone(append(DELETE, from, loc.segment(), null, System.currentTimeMillis()), from, loc.segment());
+                active.channel.force(false);
+                index.put(to, moved);
+                remove(from, loc);
+                return true;
+            }
+        }
+        return files.move(from, to);
+    }
+
+    // Not forced to disk: a delete lost in a crash only brings back an unreferenced blob.
+    @Override
+    public void delete(String name) throws IOException {
+        synchronized (this) {
+            Location loc = index.get(name);
+            if (loc != null) {
+                tombstone(append(DELETE, name, loc.segment(), null, System.currentTimeMillis()), name, loc.segment());
+                remove(name, loc);
+            }
+        }
+        files.delete(name);
+    }
+
+    // Compacts every sealed segment that is mostly dead.
+    @Scheduled(fixedDelayString = "${media.storage.packed.compact-interval:60000}")
+    public void compact() {
+        for (Segment s : List.copyOf(segments.values())) {
+            if (s.sealed() && s.size > 0 && s.dead.get() >= s.size * compactRatio) {
+                long started = System.nanoTime();
+                try {
+                    compact(s);
+                } catch (IOException e) {
+                    log.warn("Could not compact {}: {}", s.path.getFileName(), e.getMessage());
+                } finally {
+                    compactionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    // Live blobs move one at a time, each under the write lock, so uploads and deletes go on
+    // meanwhile. A crash part way leaves the segment in place and copies that later ones supersede.
+    void compact(Segment s) throws IOException {
+        List<Entry> entries = readFooter(s.map);
+        long moved = 0;
+        for (Entry e : entries) {
+            synchronized (this) {
+                if (e.kind() == BLOB) {
+                    Location cur = index.get(e.name());
+                    if (cur == null || cur.segment() != s.id || cur.offset() != e.offset()) continue;
+                    ByteBuffer data = s.map.duplicate();
+                    data.limit(e.offset() + e.length()).position(e.offset());
+                    index.put(e.name(), append(BLOB, e.name(), 0, data, e.writtenAt()));
+                    moved += e.length();
+                } else if (e.target() != s.id && segments.containsKey(e.target())) {
+                    // the blob it removes still sits in an older segment
+                    tombstone(append(DELETE, e.name(), e.target(), null, e.writtenAt()), e.name(), e.target());
+                }
+            }
+        }
+        synchronized (this) {
+            active.channel.force(false);
+            segments.remove(s.id);
+            // delete records aimed at this segment have nothing left to delete
+            for (Segment other : segments.values()) {
+                Long bytes = other.tombstones.remove(s.id);
+                if (bytes != null) other.dead.addAndGet(bytes);
+            }
+        }
+        // the mapping, and slices of it still being sent, stay valid after the file is gone
+        Files.deleteIfExists(s.path);
+        log.info("Compacted {}: moved {} live bytes of {}", s.path.getFileName(), moved, s.size);
+    }
+
+    // Seals the active segment and starts the next one.
+    synchronized void roll() throws IOException {
+        Segment s = active;
+        writeFooter(s);
+        active = newSegment(s.id + 1);
+    }
+
+    private Location append(byte kind, String name, int target, ByteBuffer data, long writtenAt) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = data == null ? 0 : data.remaining();
+        int headerLength = FIXED_HEADER + nameBytes.length;
+        long recordLength = recordLength(name, length);
+        if (active.size > 0 && active.size + recordLength > segmentBytes) roll();
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength)
+            .putInt(RECORD_MAGIC).put(kind).putShort((short) nameBytes.length).put(nameBytes)
+            .putInt(target).putLong(writtenAt).putInt(length).flip();
+        CRC32 crc = new CRC32();
+        crc.update(header.duplicate());
+        if (data != null) crc.update(data.duplicate());
+        ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+
+        Segment s = active;
+        long start = s.size;
+        s.channel.position(start);
+        ByteBuffer[] record = data == null ? new ByteBuffer[] { header, trailer } : new ByteBuffer[] { header, data.duplicate(), trailer };
+        while (record[record.length - 1].hasRemaining()) s.channel.write(record);
+        s.size = start + recordLength;
+        Entry e = new Entry(kind, name, target, (int) (start + headerLength), length, writtenAt);
+        s.entries.add(e);
+        return new Location(s.id, e.offset(), length, writtenAt);
+    }
+
+    private void remove(String name, Location loc) {
+        index.remove(name, loc);
+        Segment s = segments.get(loc.segment());
+        if (s != null) s.dead.addAndGet(recordLength(name, loc.length()));
+    }
+
+    // A delete record written to `at` stays live only while the segment it targets exists.
+    private void tombstone(Location at, String name, int target) {
+        Segment s = segments.get(at.segment());
+        long bytes = recordLength(name, 0);
+        if (target == at.segment() || !segments.containsKey(target)) s.dead.addAndGet(bytes);
+        else s.tombstones.merge(target, bytes, Long::sum);
+    }
+
+    // Dead space is counted in whole records so that segments of tiny blobs qualify too.
+    private static long recordLength(String name, int length) {
+        return FIXED_HEADER + name.getBytes(StandardCharsets.UTF_8).length + length + 4L;
+    }
+
+    private void open() throws IOException {
+        TreeMap<Integer, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> packs = Files.newDirectoryStream(dir, "segment-*.pack")) {
+            for (Path p : packs) {
+                String n = p.getFileName().toString();
+                found.put(Integer.parseInt(n.substring("segment-".length(), n.length() - ".pack".length())), p);
+            }
+        }
+        for (Map.Entry<Integer, Path> f : found.entrySet()) {
+            Segment s = new Segment(f.getKey(), f.getValue());
+            s.channel = FileChannel.open(s.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer m = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, s.channel.size());
+            List<Entry> entries = readFooter(m);
+            if (entries == null) {
+                s.entries = scan(s);
+                entries = s.entries;
+                segments.put(s.id, s);
+                if (!f.getKey().equals(found.lastKey())) writeFooter(s);
+                else active = s;
+            } else {
+                s.size = m.getLong(m.limit() - TAIL + 4);
+                s.map = m;
+                s.channel.close();
+                s.channel = null;
+                segments.put(s.id, s);
+            }
+            apply(s.id, entries);
+        }
+        if (active == null) active = newSegment(found.isEmpty() ? 1 : found.lastKey() + 1);
+    }
+
+    // Later records win: a blob replaces what the index had, a delete removes the blob only if
+    // the index still points into the segment it names.
+    private void apply(int segment, List<Entry> entries) {
+        for (Entry e : entries) {
+            if (e.kind() == BLOB) {
+                Location prev = index.put(e.name(), new Location(segment, e.offset(), e.length(), e.writtenAt()));
+                if (prev != null) segments.get(prev.segment()).dead.addAndGet(recordLength(e.name(), prev.length()));
+            } else {
+                Location cur = index.get(e.name());
+                if (cur != null && cur.segment() == e.target()) remove(e.name(), cur);
+                tombstone(new Location(segment, e.offset(), 0, e.writtenAt()), e.name(), e.target());
+            }
+        }
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment s = new Segment(id, dir.resolve(String.format("segment-%08d.pack", id)));
+        s.channel = FileChannel.open(s.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        s.entries = new ArrayList<>();
+        segments.put(id, s);
+        return s;
+    }
+
+    // Reads records from the start of an unsealed segment and cuts off whatever follows the last
+    // intact one (a write torn by a crash, or a footer that was never finished).
+    private List<Entry> scan(Segment s) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long fileSize = s.channel.size();
+        int pos = 0;
+        if (fileSize > 0) {
+            ByteBuffer m = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            Entry e;
+            while ((e = readRecord(m, pos)) != null) {
+                entries.add(e);
+                pos = e.offset() + e.length() + 4;
+            }
+        }
+        if (pos < fileSize) {
+            log.warn("Truncating {} from {} to {} bytes after an incomplete write", s.path.getFileName(), fileSize, pos);
+            s.channel.truncate(pos);
+        }
+        s.size = pos;
+        return entries;
+    }
+
+    private static Entry readRecord(ByteBuffer m, int pos) {
+        int limit = m.limit();
+        if (pos + FIXED_HEADER > limit || m.getInt(pos) != RECORD_MAGIC) return null;
+        byte kind = m.get(pos + 4);
+        int nameLength = m.getShort(pos + 5) & 0xffff;
+        int p = pos + 7;
+        if (p + nameLength + 16 > limit) return null;
+        byte[] name = new byte[nameLength];
+        m.get(p, name);
+        p += nameLength;
+        int target = m.getInt(p);
+        long writtenAt = m.getLong(p + 4);
+        int length = m.getInt(p + 12);
+        p += 16;
+        if (length < 0 || (long) p + length + 4 > limit) return null;
+        CRC32 crc = new CRC32();
+        crc.update(m.duplicate().limit(p + length).position(pos));
+        if ((int) crc.getValue() != m.getInt(p + length)) return null;
+        return new Entry(kind, new String(name, StandardCharsets.UTF_8), target, p, length, writtenAt);
+    }
+
+    private void writeFooter(Segment s) throws IOException {
+        int bytes = 0;
+        for (Entry e : s.entries) bytes += 1 + 2 + e.name().getBytes(StandardCharsets.UTF_8).length + 4 + 4 + 4 + 8;
+        ByteBuffer footer = ByteBuffer.allocate(bytes + TAIL);
+        for (Entry e : s.entries) {
+            byte[] name = e.name().getBytes(StandardCharsets.UTF_8);
+            footer.put(e.kind()).putShort((short) name.length).put(name)
+                .putInt(e.target()).putInt(e.offset()).putInt(e.length()).putLong(e.writtenAt());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(footer.array(), 0, bytes);
+        footer.putInt(s.entries.size()).putLong(s.size).putInt((int) crc.getValue()).putInt(FOOTER_MAGIC).flip();
+        long pos = s.size;
+        while (footer.hasRemaining()) pos += s.channel.write(footer, pos);
+        s.channel.force(true);
+        MappedByteBuffer m = s.channel.map(FileChannel.MapMode.READ_ONLY, 0, pos);
+        synchronized (s) {
+            s.map = m;
+            s.channel.close();
+            s.channel = null;
+        }
+        s.entries = null;
+    }
+
+    // Null when the segment has no complete footer, i.e. it was still being written.
+    private static List<Entry> readFooter(ByteBuffer m) {
+        int size = m.limit();
+        if (size < TAIL || m.getInt(size - 4) != FOOTER_MAGIC) return null;
+        int count = m.getInt(size - TAIL);
+        long start = m.getLong(size - TAIL + 4);
+        if (count < 0 || start < 0 || start > size - TAIL) return null;
+        CRC32 crc = new CRC32();
+        crc.update(m.duplicate().limit(size - TAIL).position((int) start));
+        if ((int) crc.getValue() != m.getInt(size - 8)) return null;
+        ByteBuffer f = m.duplicate().limit(size - TAIL).position((int) start);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = f.get();
+            byte[] name = new byte[f.getShort() & 0xffff];
+            f.get(name);
+            entries.add(new Entry(kind, new String(name, StandardCharsets.UTF_8), f.getInt(), f.getInt(), f.getInt(), f.getLong()));
+        }
+        return entries;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        // the active segment stays unsealed; the next start scans it
+        if (active != null) {
+            synchronized (active) {
+                FileChannel c = active.channel;
+                if (c != null) {
+                    c.force(false);
+                    c.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+// Originals in an S3-compatible object store (AWS S3, MinIO, Ceph RGW...) so any number of
+// media-service instances can share them without a common volume. Requests are signed with
+// AWS Signature V4 and use path-style URLs (<endpoint>/<bucket>/<prefix><name>), which every
+// S3 clone understands. Objects are downloaded on first read into a local disk cache bounded by
+// media.storage.s3.cache-max-bytes; stored objects never change (content addressed), so cached
+// copies need no revalidation. A fresh upload seeds the cache, so generating its variants right
+// afterwards does not download it again.
+// A path handed out by fetch() may be opened later on another thread (sendfile, decoding), so an
+// evicted copy is only deleted media.storage.s3.eviction-delay later. Each cached copy gets a
+// directory of its own, so a name downloaded again meanwhile never shares the doomed file.
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "s3")
+public class S3MediaStorage implements MediaStorage {
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private record Cached(Path file, long size) {}
+
+    private record Evicted(Path file, long at) {}
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String prefix;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final Duration timeout;
+    private final HttpClient http;
+    private final Path cacheDir;
+    private final Cache<String, Cached> cache;
+    private final Map<String, CompletableFuture<Cached>> downloads = new ConcurrentHashMap<>();
+    private final Queue<Evicted> evicted = new ConcurrentLinkedQueue<>();
+    private final AtomicLong copies = new AtomicLong();
+    private final Duration evictionDelay;
+
+    public S3MediaStorage(@Value("${media.storage.s3.endpoint}") String endpoint,
+                          @Value("${media.storage.s3.bucket}") String bucket,
+                          @Value("${media.storage.s3.prefix:}") String prefix,
+                          @Value("${media.storage.s3.region:us-east-1}") String region,
+                          @Value("${media.storage.s3.access-key}") String accessKey,
+                          @Value("${media.storage.s3.secret-key}") String secretKey,
+                          @Value("${media.storage.s3.timeout:10s}") Duration timeout,
+                          @Value("${uploads.dir:uploads}") String uploadsDir,
+                          @Value("${media.storage.s3.cache-max-bytes:1073741824}") long cacheMaxBytes,
+                          @Value("${media.storage.s3.eviction-delay:60s}") Duration evictionDelay) throws IOException {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.timeout = timeout;
+        this.evictionDelay = evictionDelay;
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.cacheDir = Paths.get(uploadsDir).resolve("s3-cache");
+        // the index of what is cached lives in memory only, so start from an empty directory
+        if (Files.exists(cacheDir)) {
+            try (Stream<Path> old = Files.walk(cacheDir)) {
+                old.sorted(Comparator.reverseOrder()).filter(p -> !p.equals(cacheDir)).forEach(p -> p.toFile().delete());
+            }
+        }
+        Files.createDirectories(cacheDir);
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(Math.max(0, cacheMaxBytes))
+            .weigher((String name, Cached c) -> (int) Math.min(Integer.MAX_VALUE, c.size()))
+            .removalListener((String name, Cached c, RemovalCause cause) -> {
+                if (c != null) evicted.add(new Evicted(c.file(), System.nanoTime()));
+            })
+            // the listener only queues, so it can run on the calling thread
+            .executor(Runnable::run)
+            .build();
+    }
+
+    @Override
+    public boolean put(String name, Path source) throws IOException {
+        if (exists(name)) {
+            Files.deleteIfExists(source);
+            return false;
+        }
+        HttpResponse<Void> response = send("PUT", name, Map.of(), HttpRequest.BodyPublishers.ofFile(source),
+            HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) throw failure("PUT", name, response.statusCode());
+        Path cached = newCachePath(name);
+        Files.createDirectories(cached.getParent());
+        Files.move(source, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        cache.put(name, new Cached(cached, Files.size(cached)));
+        return true;
+    }
+
+    @Override
+    public Path fetch(String name) throws IOException {
+        if (!MediaStorage.isValidName(name)) return null;
+        Cached c = cache.getIfPresent(name);
+        if (c != null && Files.exists(c.file())) return c.file();
+        // concurrent readers of the same name wait for one download
+        CompletableFuture<Cached> mine = new CompletableFuture<>();
+        CompletableFuture<Cached> job = downloads.putIfAbsent(name, mine);
+        if (job == null) {
+            try {
+                c = download(name);
+                if (c != null) cache.put(name, c);
+                mine.complete(c);
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                downloads.remove(name, mine);
+            }
+        } else {
+            try {
+                c = job.join();
+            } catch (CompletionException e) {
+                throw new IOException("Download of " + name + " failed", e.getCause());
+            }
+        }
+        return c == null ? null : c.file();
+    }
+
+    @Override
+    public boolean exists(String name) throws IOException {
+        // always asked of the store: another instance may have deleted what is cached here
+        if (!MediaStorage.isValidName(name)) return false;
+        int status = send("HEAD", name, Map.of(), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status == 404) return false;
+        if (status != 200) throw failure("HEAD", name, status);
+        return true;
+    }
+
+    // S3 has no rename: copy server-side, then delete the source.
+    @Override
+    public boolean move(String from, String to) throws IOException {
+        String source = "/" + bucket + "/" + encode(prefix + from);
+        HttpResponse<String> copied = send("PUT", to, Map.of("x-amz-copy-source", source),
+            HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        if (copied.statusCode() == 404) return false;
+        // a copy can also fail after the 200 status line has been sent
+        if (copied.statusCode() != 200 || copied.body().contains("<Error>")) throw failure("COPY", from, copied.statusCode());
+        delete(from);
+        return true;
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        if (!MediaStorage.isValidName(name)) return;
+        cache.invalidate(name);
+        int status = send("DELETE", name, Map.of(), HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 204 && status != 200 && status != 404) throw failure("DELETE", name, status);
+    }
+
+    private Cached download(String name) throws IOException {
+        Path target = newCachePath(name);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(cacheDir, ".download-", ".part");
+        try {
+            HttpResponse<Path> response = send("GET", name, Map.of(), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofFile(tmp));
+            if (response.statusCode() == 404) return null;
+            if (response.statusCode() != 200) throw failure("GET", name, response.statusCode());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new Cached(target, Files.size(target));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path newCachePath(String name) {
+        return Shards.dir(cacheDir, name).resolve(Long.toString(copies.incrementAndGet(), 36)).resolve(name);
+    }
+
+    // Deletes evicted copies once nothing can still be about to open them; a response that has
+    // opened one keeps reading it after the unlink.
+    @Scheduled(fixedDelayString = "${media.storage.s3.eviction-sweep-interval:10000}")
+    public void purgeEvicted() {
+        long cutoff = System.nanoTime() - evictionDelay.toNanos();
+        Evicted e;
+        while ((e = evicted.peek()) != null && e.at() - cutoff <= 0) {
+            evicted.poll();
+            e.file().toFile().delete();
+            e.file().getParent().toFile().delete();
+        }
+    }
+
+    private <T> HttpResponse<T> send(String method, String name, Map<String, String> extraHeaders,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler) throws IOException {
+        if (!MediaStorage.isValidName(name)) throw new IllegalArgumentException("Invalid media name: " + name);
+        String path = endpoint.getRawPath() + "/" + bucket + "/" + encode(prefix + name);
+        URI uri = endpoint.resolve(path);
+        String payloadHash = method.equals("PUT") && !extraHeaders.containsKey("x-amz-copy-source") ? UNSIGNED_PAYLOAD : EMPTY_SHA256;
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        Map<String, String> signed = new TreeMap<>(extraHeaders);
+        signed.put("host", hostHeader(uri));
+        signed.put("x-amz-content-sha256", payloadHash);
+        signed.put("x-amz-date", amzDate);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).method(method, body);
+        // host is set by the client itself and may not be added by hand
+        signed.forEach((k, v) -> { if (!k.equals("host")) request.header(k, v); });
+        request.header("Authorization", authorization(method, path, signed, payloadHash, amzDate));
+        try {
+            return http.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted talking to the object store", e);
+        }
+    }
+
+    // AWS Signature Version 4 for a request without query parameters.
+    String authorization(String method, String path, Map<String, String> headers, String payloadHash, String amzDate) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        StringBuilder canonicalHeaders = new StringBuilder();
+        headers.forEach((k, v) -> canonicalHeaders.append(k).append(':').append(v.trim()).append('\n'));
+        String signedHeaders = String.join(";", headers.keySet());
+        String canonicalRequest = method + "\n" + path + "\n\n" + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadHash;
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders
+            + ", Signature=" + hex(hmac(key, stringToSign));
+    }
+
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (port == 80 && "http".equals(uri.getScheme())) || (port == 443 && "https".equals(uri.getScheme()));
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    // RFC 3986 percent-encoding of everything but unreserved characters and '/'.
+    private static String encode(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || "-._~/".indexOf(c) >= 0) {
+                sb.append(c);
+            } else {
+                sb.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static IOException failure(String operation, String name, int status) {
+        return new IOException("Object store " + operation + " " + name + " failed with HTTP " + status);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(String data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Two-level fan-out for directories holding one file per image: "<root>/ab/cd/<name>", where
+// "abcd" starts the hex digest of the name. 65536 leaf directories keep every one of them small
+// (and lookups and backups fast) even with tens of millions of files.
+final class Shards {
+    private static final Logger log = LoggerFactory.getLogger(Shards.class);
+    private static final Pattern HEX = Pattern.compile("[0-9a-f]{4,}");
+
+    private Shards() {}
+
+    // Only the part before the first dot counts, so "x.png", "x.png.deleting" and the variants
+    // of x (sharded by their original's name) all share a directory.
+    static Path dir(Path root, String name) {
+        int dot = name.indexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        // content-addressed names are digests already
+        String key = HEX.matcher(stem).matches() ? stem : HexFormat.of().formatHex(sha256(stem));
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4));
+    }
+
+    // Moves the files lying directly in `root` into their shard. `original` maps a file name to
+    // the name it is sharded by. Safe to run while the service is live: each move is a rename
+    // within one filesystem, and readers look in both places. Returns the number moved.
+    static int migrate(Path root, UnaryOperator<String> original) {
+        int moved = 0;
+        long started = System.nanoTime();
+        try (DirectoryStream<Path> flat = Files.newDirectoryStream(root, p -> Files.isRegularFile(p))) {
+            for (Path file : flat) {
+                String name = file.getFileName().toString();
+                // temp files of uploads in progress
+                if (name.startsWith(".")) continue;
+                Path target = dir(root, original.apply(name)).resolve(name);
+                try {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                } catch (NoSuchFileException e) {
+                    // deleted meanwhile
+                }
+                if (moved > 0 && moved % 10_000 == 0) log.info("Moved {} files in {} into shards so far", moved, root);
+            }
+        } catch (IOException e) {
+            log.warn("Moving files in {} into shards stopped: {}", root, e.getMessage());
+        }
+        if (moved > 0) {
+            log.info("Moved {} files in {} into shards in {} ms", moved, root, (System.nanoTime() - started) / 1_000_000);
+        }
+        return moved;
+    }
+
+    // Runs migrate() in the background so startup is not held up by a large flat directory.
+    static void migrateInBackground(Path root, UnaryOperator<String> original) {
+        Thread t = new Thread(() -> migrate(root, original), "media-shard-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
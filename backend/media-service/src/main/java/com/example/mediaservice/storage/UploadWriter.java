@@ -0,0 +1,136 @@
+package com.example.mediaservice.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Stages an upload in a temp file under uploads.dir in a single pass over the incoming stream:
+// the first bytes are checked against the image magic numbers (the client's Content-Type is not
+// trusted), the SHA-256 is computed and the size limit enforced while copying. The file is then
+// handed to MediaStorage and only appears under its final name once complete.
+// Files are content addressed: the final name is "<sha256>.<ext>", so identical uploads map
+// to one stored file and storing a duplicate just drops the temp copy (see BlobStore for refcounts).
+@Component
+public class UploadWriter {
+    private static final Logger log = LoggerFactory.getLogger(UploadWriter.class);
+    static final String TEMP_PREFIX = ".upload-";
+    static final String TEMP_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum ImageType {
+        PNG("image/png", ".png", new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' }),
+        JPEG("image/jpeg", ".jpg", new byte[] { (byte) 0xff, (byte) 0xd8, (byte) 0xff }),
+        GIF87("image/gif", ".gif", new byte[] { 'G', 'I', 'F', '8', '7', 'a' }),
+        GIF89("image/gif", ".gif", new byte[] { 'G', 'I', 'F', '8', '9', 'a' });
+
+        static final int MAX_MAGIC = 8;
+
+        public final String contentType;
+        public final String extension;
+        private final byte[] magic;
+
+        ImageType(String contentType, String extension, byte[] magic) {
+            this.contentType = contentType;
+            this.extension = extension;
+            this.magic = magic;
+        }
+
+        static ImageType detect(byte[] head, int length) {
+            for (ImageType t : values()) {
+                if (length >= t.magic.length && Arrays.equals(head, 0, t.magic.length, t.magic, 0, t.magic.length)) return t;
+            }
+            return null;
+        }
+    }
+
+    // A fully received upload in its temp file, not yet stored; `filename` is the final,
+    // digest-based name relative to the uploads directory.
+    public record Staged(Path temp, String filename, String contentType, long size, String sha256) {}
+
+    // The upload is not acceptable (empty, too large, not a supported image); maps to 400.
+    public static class Rejected extends RuntimeException {
+        public Rejected(String message) { super(message); }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+
+    public UploadWriter(@Value("${uploads.dir:uploads}") String dir,
+                        @Value("${media.upload.max-bytes:2097152}") long maxBytes) throws IOException {
+        this.dir = Paths.get(dir);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.dir);
+        removeAbandonedTempFiles();
+    }
+
+    public long maxBytes() { return maxBytes; }
+
+    public Staged stage(InputStream in) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        int head = in.readNBytes(buf, 0, ImageType.MAX_MAGIC);
+        if (head == 0) throw new Rejected("Empty file");
+        ImageType type = ImageType.detect(buf, head);
+        if (type == null) throw new Rejected("Unsupported file type");
+
+        MessageDigest sha = sha256();
+        Path tmp = Files.createTempFile(dir, TEMP_PREFIX, TEMP_SUFFIX);
+        boolean staged = false;
+        try {
+            long size = 0;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                int n = head;
+                while (n >= 0) {
+                    size += n;
+                    if (size > maxBytes) throw new Rejected("File too large (max " + maxBytes / (1024 * 1024) + "MB)");
+                    sha.update(buf, 0, n);
+                    ByteBuffer chunk = ByteBuffer.wrap(buf, 0, n);
+                    while (chunk.hasRemaining()) out.write(chunk);
+                    n = in.read(buf);
+                }
+                // make the content durable before it is stored under its final name
+                out.force(false);
+            }
+            String digest = HexFormat.of().formatHex(sha.digest());
+            staged = true;
+            return new Staged(tmp, digest + type.extension, type.contentType, size, digest);
+        } finally {
+            if (!staged) Files.deleteIfExists(tmp);
+        }
+    }
+
+    public void discard(Staged staged) throws IOException {
+        Files.deleteIfExists(staged.temp());
+    }
+
+    // Temp files only survive a crash mid-upload; nothing references them.
+    private void removeAbandonedTempFiles() {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, TEMP_PREFIX + "*" + TEMP_SUFFIX)) {
+            for (Path p : stale) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.warn("Could not clean up partial uploads in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
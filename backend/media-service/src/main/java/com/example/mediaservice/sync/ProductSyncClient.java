@@ -0,0 +1,85 @@
+package com.example.mediaservice.sync;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+// Shared, connection-pooled client for media-service -> product-service calls.
+@Component
+public class ProductSyncClient implements DisposableBean {
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate rest;
+    private final String productBase;
+    private final String internalToken;
+
+    public ProductSyncClient(@Value("${media.sync.max-connections:20}") int maxConnections,
+                             @Value("${media.sync.connect-timeout:2s}") Duration connectTimeout,
+                             @Value("${media.sync.read-timeout:5s}") Duration readTimeout) {
+        PoolingHttpClientConnectionManager connections = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .build())
+            .build();
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connections)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build())
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .build();
+        this.rest = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        String base = System.getenv("PRODUCT_SERVICE_URL");
+        this.productBase = (base == null || base.isBlank()) ? "http://product-service:8082" : base;
+        this.internalToken = System.getenv("INTERNAL_TOKEN");
+    }
+
+    // Without an internal token product-service would reject every call, so nothing is queued.
+    public boolean isConfigured() {
+        return internalToken != null && !internalToken.isBlank();
+    }
+
+    // Appends mediaId to the product's imageIds. Throws on any non-2xx answer or I/O failure.
+    public void attachImage(String productId, String mediaId) throws RestClientException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Internal-Token", internalToken);
+        HttpEntity<Map<String, String>> request = new HttpEntity<>(Map.of("mediaId", mediaId), headers);
+        rest.postForEntity(productBase + "/api/products/" + productId + "/images", request, Void.class);
+    }
+
+    // Removes mediaId from the product's imageIds; removing an id that is not there succeeds.
+    public void detachImage(String productId, String mediaId) throws RestClientException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Internal-Token", internalToken);
+        rest.exchange(productBase + "/api/products/" + productId + "/images/" + mediaId, HttpMethod.DELETE,
+            new HttpEntity<>(headers), Void.class);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        httpClient.close();
+    }
+}
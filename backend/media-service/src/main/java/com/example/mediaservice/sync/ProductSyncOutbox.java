@@ -0,0 +1,143 @@
+package com.example.mediaservice.sync;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import com.example.common.concurrent.VirtualThreads;
+import com.example.mediaservice.model.ProductSyncTask;
+import com.example.mediaservice.repository.ProductSyncTaskRepository;
+
+// Delivers upload and delete notifications to product-service off the request thread.
+//
+// Every notification is first persisted in the product_sync_outbox collection, then handed to a
+// small worker pool with a bounded queue. A worker claims a task atomically by pushing its
+// nextAttemptAt forward by the lease, so a task is never delivered twice concurrently (also
+// across replicas). Failures are rescheduled with exponential backoff; a periodic sweep
+// re-submits due tasks, which covers a full queue, crashed workers and restarts.
+@Component
+public class ProductSyncOutbox implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ProductSyncOutbox.class);
+    private static final Duration LEASE = Duration.ofSeconds(30);
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+    private static final int SWEEP_BATCH = 200;
+
+    private final ProductSyncTaskRepository tasks;
+    private final MongoTemplate mongo;
+    private final ProductSyncClient client;
+    private final ThreadPoolExecutor workers;
+
+    public ProductSyncOutbox(ProductSyncTaskRepository tasks, MongoTemplate mongo, ProductSyncClient client,
+                             @Value("${media.sync.workers:2}") int workers,
+                             @Value("${media.sync.queue-capacity:1000}") int queueCapacity,
+                             @Value("${app.threads.virtual:false}") boolean virtualThreads) {
+        this.tasks = tasks;
+        this.mongo = mongo;
+        this.client = client;
+        // the pool size still caps concurrent calls to product-service; only the carrier changes
+        ThreadFactory threads = virtualThreads && VirtualThreads.isSupported()
+            ? VirtualThreads.threadFactory("product-sync-")
+            : r -> {
+                Thread t = new Thread(r, "product-sync");
+                t.setDaemon(true);
+                return t;
+            };
+        this.workers = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threads, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Persists the notification and schedules delivery; returns without waiting for it.
+    public void enqueue(String mediaId, String productId) {
+        if (!client.isConfigured()) return;
+        ProductSyncTask task = tasks.save(new ProductSyncTask(mediaId, productId, Instant.now()));
+        submit(task.getId());
+    }
+
+    // Same for a deleted media document. A still pending attach of the same media is dropped
+    // first so a retry cannot re-add the id after the detach went through.
+    public void enqueueDetach(String mediaId, String productId) {
+        if (!client.isConfigured()) return;
+        mongo.remove(Query.query(Criteria.where("mediaId").is(mediaId).and("detach").ne(true)), ProductSyncTask.class);
+        ProductSyncTask task = new ProductSyncTask(mediaId, productId, Instant.now());
+        task.setDetach(true);
+        submit(tasks.save(task).getId());
+    }
+
+    @Scheduled(fixedDelayString = "${media.sync.sweep-interval:5000}")
+    public void sweep() {
+        for (ProductSyncTask task : tasks.findByNextAttemptAtLessThanEqualOrderByNextAttemptAt(Instant.now(), PageRequest.of(0, SWEEP_BATCH))) {
+            if (!submit(task.getId())) break;
+        }
+    }
+
+    private boolean submit(String taskId) {
+        try {
+            workers.execute(() -> deliver(taskId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // queue full: the task stays due in Mongo and the next sweep picks it up
+            return false;
+        }
+    }
+
+    void deliver(String taskId) {
+        Instant now = Instant.now();
+        ProductSyncTask task = mongo.findAndModify(
+            Query.query(Criteria.where("id").is(taskId).and("nextAttemptAt").lte(now)),
+            new Update().set("nextAttemptAt", now.plus(LEASE)).inc("attempts", 1),
+            FindAndModifyOptions.options().returnNew(true),
+            ProductSyncTask.class);
+        if (task == null) return; // already delivered or claimed by another worker
+
+        try {
+            if (task.isDetach()) client.detachImage(task.getProductId(), task.getMediaId());
+            else client.attachImage(task.getProductId(), task.getMediaId());
+            tasks.deleteById(task.getId());
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                // retrying cannot succeed: the product is gone or the request is malformed
+                log.warn("Dropping product sync of media {} to product {}: {}", task.getMediaId(), task.getProductId(), e.getStatusCode());
+                tasks.deleteById(task.getId());
+            } else {
+                reschedule(task, e);
+            }
+        } catch (RestClientException e) {
+            reschedule(task, e);
+        }
+    }
+
+    private void reschedule(ProductSyncTask task, Exception cause) {
+        long factor = 1L << Math.min(task.getAttempts() - 1, 20);
+        Duration backoff = MIN_BACKOFF.multipliedBy(factor);
+        if (backoff.compareTo(MAX_BACKOFF) > 0) backoff = MAX_BACKOFF;
+        mongo.updateFirst(Query.query(Criteria.where("id").is(task.getId())),
+            new Update().set("nextAttemptAt", Instant.now().plus(backoff)).set("lastError", String.valueOf(cause.getMessage())),
+            ProductSyncTask.class);
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.mediaservice.web;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.example.mediaservice.web.HotFileCache.CachedFile;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Serves files from disk without buffering them on the heap. Validators come from a single
+// stat (size + mtime), so conditional GETs are answered with 304 before the file is opened.
+// Small hot files are answered from the off-heap HotFileCache without any filesystem access,
+// and blobs of a packed MediaStorage straight from their memory-mapped segment.
+// Otherwise, when the container supports sendfile (Tomcat NIO), full and single-range
+// responses are handed to the kernel; failing that a FileSystemResource is returned and
+// Spring streams it, including Range/multi-range handling.
+@Component
+public class FileResponder {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Content types are derived from the extension, so one lookup per extension is enough.
+    private final Map<String, MediaType> contentTypes = new ConcurrentHashMap<>();
+    private final HotFileCache hotFiles;
+
+    public FileResponder(HotFileCache hotFiles) {
+        this.hotFiles = hotFiles;
+    }
+
+    // Inclusive byte range to send; partial is false when the whole file is sent.
+    private record ByteRange(long start, long end, boolean partial) {}
+
+    public ResponseEntity<?> serve(Path file, String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CachedFile cached = hotFiles.get(filename);
+        if (cached != null) return respond(null, cached, filename, request, response);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!attrs.isRegularFile()) return ResponseEntity.notFound().build();
+        return respond(file, null, filename, request, response, attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    // Bytes already in memory (a mapped slice); they bypass the hot cache, being page cache already.
+    public ResponseEntity<?> serve(ByteBuffer data, long lastModified, String filename,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return respond(null, new CachedFile(data, lastModified), filename, request, response);
+    }
+
+    private ResponseEntity<?> respond(Path file, CachedFile cached, String filename,
+                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return respond(file, cached, filename, request, response, cached.length(), cached.lastModified());
+    }
+
+    // `file` is null when the bytes are already in memory (`cached`).
+    private ResponseEntity<?> respond(Path file, CachedFile cached, String filename, HttpServletRequest request,
+                                      HttpServletResponse response, long length, long lastModified) throws IOException {
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.setContentType(contentType(filename));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
+
+        if (notModified(request, etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        boolean sendfile = file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+            && HttpMethod.GET.matches(request.getMethod()) && length > 0;
+        boolean load = cached == null && hotFiles.admitsRepeat(filename, length);
+        if (cached == null && !sendfile && !load) {
+            return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+        }
+
+        ByteRange range;
+        try {
+            range = range(request, length, etag, lastModified);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length).build();
+        }
+        // multipart/byteranges responses are left to Spring's resource region support
+        if (range == null) return ResponseEntity.ok().headers(headers).body(file != null ? new FileSystemResource(file) : bytes(cached));
+
+        if (load) cached = hotFiles.load(filename, file, length, lastModified);
+
+        if (range.partial()) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.forEach((name, values) -> values.forEach(v -> response.addHeader(name, v)));
+        response.setContentLengthLong(range.end() - range.start() + 1);
+
+        if (cached != null) {
+            if (!HttpMethod.HEAD.matches(request.getMethod())) {
+                ByteBuffer slice = cached.data().duplicate();
+                slice.limit((int) range.end() + 1).position((int) range.start());
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                while (slice.hasRemaining()) out.write(slice);
+            }
+            return null;
+        }
+
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, range.start());
+        request.setAttribute(SENDFILE_END, range.end() + 1);
+        // the response is complete; Tomcat writes the body with sendfile after the filter chain returns
+        return null;
+    }
+
+    private static ByteArrayResource bytes(CachedFile cached) {
+        byte[] copy = new byte[(int) cached.length()];
+        cached.data().duplicate().get(copy);
+        return new ByteArrayResource(copy);
+    }
+
+    // Returns the range to send, or null for a multi-range request.
+    private static ByteRange range(HttpServletRequest request, long length, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || length == 0 || !ifRangeMatches(request, etag, lastModified)) {
+            return new ByteRange(0, length - 1, false);
+        }
+        List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+        if (ranges.size() > 1) return null;
+        if (ranges.isEmpty()) return new ByteRange(0, length - 1, false);
+        return new ByteRange(ranges.get(0).getRangeStart(length), ranges.get(0).getRangeEnd(length), true);
+    }
+
+    private MediaType contentType(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String ext = dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        return contentTypes.computeIfAbsent(ext,
+            e -> MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM));
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) return etagMatches(ifNoneMatch, etag);
+        long since = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    // A Range is only honoured if If-Range is absent or still identifies the current file.
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) return ifRange.equals(etag);
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private static boolean etagMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
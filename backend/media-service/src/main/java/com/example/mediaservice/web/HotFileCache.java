@@ -0,0 +1,95 @@
+package com.example.mediaservice.web;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Keeps the bytes of frequently requested small files in direct (off-heap) buffers so hot
+// thumbnails are served without touching the filesystem. Bounded by total bytes; Caffeine's
+// W-TinyLFU admission keeps one-off downloads from pushing out genuinely hot files. A file is
+// only copied into a buffer on its second request within the ttl: the first is served from
+// disk, so one-off downloads never allocate.
+// Exposed in actuator as cache.gets/cache.evictions{cache=media.files} and media.cache.bytes.
+@Component
+public class HotFileCache {
+    // An immutable snapshot of a file; readers must use data.duplicate() to keep positions private.
+    public record CachedFile(ByteBuffer data, long lastModified) {
+        public long length() { return data.limit(); }
+    }
+
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final Cache<String, CachedFile> cache;
+    // names requested once and not loaded yet
+    private final Cache<String, Boolean> seen;
+
+    public HotFileCache(@Value("${media.cache.enabled:false}") boolean enabled,
+                        @Value("${media.cache.max-bytes:67108864}") long maxBytes,
+                        @Value("${media.cache.max-entry-bytes:262144}") long maxEntryBytes,
+                        @Value("${media.cache.ttl:10m}") Duration ttl,
+                        MeterRegistry registry) {
+        this.enabled = enabled && maxBytes > 0;
+        this.maxEntryBytes = Math.min(maxEntryBytes, Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(Math.max(0, maxBytes))
+            .weigher((String name, CachedFile f) -> (int) f.length())
+            // safety net for files changed on disk behind the service's back
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        this.seen = Caffeine.newBuilder().maximumSize(10_000).expireAfterWrite(ttl).build();
+        CaffeineCacheMetrics.monitor(registry, cache, "media.files");
+        Gauge.builder("media.cache.bytes", cache, c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+            .description("Bytes of file content held by the hot media cache")
+            .register(registry);
+    }
+
+    public CachedFile get(String filename) {
+        return enabled ? cache.getIfPresent(filename) : null;
+    }
+
+    public boolean admits(long length) {
+        return enabled && length > 0 && length <= maxEntryBytes;
+    }
+
+    // Whether to load the file now: true when it is small enough and was requested before.
+    // Otherwise the request is remembered so the next one for the same name loads it.
+    public boolean admitsRepeat(String filename, long length) {
+        if (!admits(length)) return false;
+        if (seen.asMap().remove(filename) != null) return true;
+        seen.put(filename, Boolean.TRUE);
+        return false;
+    }
+
+    // Reads the file into a direct buffer and offers it to the cache.
+    public CachedFile load(String filename, Path file, long length, long lastModified) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect((int) length);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+        }
+        buf.flip();
+        CachedFile f = new CachedFile(buf.asReadOnlyBuffer(), lastModified);
+        cache.put(filename, f);
+        return f;
+    }
+
+    public void invalidate(String filename) {
+        cache.invalidate(filename);
+        seen.invalidate(filename);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.mediaservice.web;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Builds the public URLs stored on and returned with Media. The base URL is resolved once at
+// startup, and legacy filesystem paths ("uploads/x.png", absolute paths) are rewritten once per
+// distinct value instead of on every read.
+@Component
+public class MediaUrls {
+    private static final String FILE_PATH = "/api/media/file/";
+
+    private final String fileBase;
+    private final Cache<String, String> normalized = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    public MediaUrls() {
+        String base = System.getenv("MEDIA_SERVICE_URL");
+        if (base == null || base.isBlank()) base = "http://localhost:8083";
+        this.fileBase = base + FILE_PATH;
+    }
+
+    public String publicUrl(String filename) {
+        return fileBase + filename;
+    }
+
+    // Returns the public URL for a stored imagePath; values that already are URLs pass through.
+    public String normalize(String imagePath) {
+        if (imagePath == null || imagePath.startsWith("http://") || imagePath.startsWith("https://")) {
+            return imagePath;
+        }
+        return normalized.get(imagePath, p -> {
+            int slash = Math.max(p.lastIndexOf('/'), p.lastIndexOf('\\'));
+            String fname = p.substring(slash + 1);
+            return fname.isEmpty() ? p : publicUrl(fname);
+        });
+    }
+}
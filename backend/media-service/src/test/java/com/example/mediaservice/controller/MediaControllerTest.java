@@ -1,19 +1,48 @@
 package com.example.mediaservice.controller;
 
 import com.example.mediaservice.model.Media;
+import com.example.mediaservice.model.MediaBlob;
 import com.example.mediaservice.repository.MediaRepository;
+import com.example.mediaservice.storage.BlobStore;
+import com.example.mediaservice.storage.ImageVariants;
+import com.example.mediaservice.storage.MediaStorage;
+import com.example.mediaservice.storage.UploadWriter;
+import com.example.mediaservice.sync.ProductSyncOutbox;
+import com.example.mediaservice.web.FileResponder;
+import com.example.mediaservice.web.HotFileCache;
+import com.example.mediaservice.web.MediaUrls;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
+// exercise the disk/sendfile path; the in-memory path is covered by HotFileCacheTest
+@TestPropertySource(properties = "media.cache.enabled=false")
 class MediaControllerTest {
 
     @Autowired
@@ -22,9 +51,37 @@ class MediaControllerTest {
     @Autowired
     private MediaRepository mediaRepository;
 
+    @Autowired
+    private MongoTemplate mongo;
+
+    @Autowired
+    private MediaStorage mediaStorage;
+
+    @Autowired
+    private ImageVariants imageVariants;
+
+    @Autowired
+    private FileResponder fileResponder;
+
+    @Autowired
+    private HotFileCache hotFiles;
+
+    @Autowired
+    private ProductSyncOutbox productSync;
+
+    @Autowired
+    private MediaUrls urls;
+
+    @Autowired
+    private UploadWriter uploads;
+
+    @Autowired
+    private BlobStore blobs;
+
     @BeforeEach
     void cleanup() {
         mediaRepository.deleteAll();
+        mongo.remove(new Query(), MediaBlob.class);
     }
 
     @Test
@@ -55,6 +112,32 @@ class MediaControllerTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void byProducts_ShouldGroupMediaByProductInOneCall() {
+        mediaRepository.save(new Media("http://example.com/image1.jpg", "product-123"));
+        mediaRepository.save(new Media("uploads/legacy.png", "product-123"));
+        mediaRepository.save(new Media("http://example.com/image3.jpg", "product-456"));
+
+        ResponseEntity<?> response = mediaController.byProducts(List.of("product-456", "product-123", "product-789"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        Map<String, List<Media>> result = (Map<String, List<Media>>) response.getBody();
+        assertEquals(List.of("product-456", "product-123", "product-789"), new ArrayList<>(result.keySet()));
+        assertEquals(2, result.get("product-123").size());
+        assertEquals(1, result.get("product-456").size());
+        assertTrue(result.get("product-789").isEmpty());
+        assertTrue(result.get("product-123").stream()
+            .anyMatch(m -> m.getImagePath().endsWith("/api/media/file/legacy.png")), "legacy paths should be normalized");
+    }
+
+    @Test
+    void byProducts_TooManyIds_ShouldReturnBadRequest() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 101; i++) ids.add("product-" + i);
+        assertEquals(400, mediaController.byProducts(ids).getStatusCodeValue());
+    }
+
     @Test
     void upload_EmptyFile_ShouldReturnError() {
         // Given
@@ -90,4 +173,312 @@ class MediaControllerTest {
         assertTrue(responseBody.contains("sellers") || responseBody.contains("seller"),
         "Response should contain seller restriction. Actual: " + responseBody);
     }
-}
\ No newline at end of file
+
+    @Test
+    void uploadStream_RawBody_ShouldStoreFileAndRecordHash() throws Exception {
+        byte[] jpeg = { (byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 1, 2, 3, 4 };
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/media/upload");
+        // the declared type is ignored; the bytes say JPEG
+        request.setContentType("image/png");
+        request.setContent(jpeg);
+
+        ResponseEntity<?> response = asSeller(() -> mediaController.uploadStream("product-123", request));
+
+        assertEquals(200, response.getStatusCodeValue());
+        Media m = (Media) response.getBody();
+        assertEquals("image/jpeg", m.getContentType());
+        assertEquals(8L, m.getSize());
+        assertEquals(64, m.getSha256().length());
+        String filename = m.getImagePath().substring(m.getImagePath().lastIndexOf('/') + 1);
+        Path stored = mediaStorage.fetch(filename);
+        stored.toFile().deleteOnExit();
+        assertTrue(filename.endsWith(".jpg"));
+        assertArrayEquals(jpeg, Files.readAllBytes(stored));
+        assertEquals(1, mediaRepository.findByProductId("product-123").size());
+    }
+
+    @Test
+    void uploadStream_NotAnImage_ShouldReturnBadRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/media/upload");
+        request.setContentType("image/png");
+        request.setContent("<html>not an image</html>".getBytes());
+
+        ResponseEntity<?> response = asSeller(() -> mediaController.uploadStream("product-123", request));
+
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals(0, mediaRepository.count());
+    }
+
+    @Test
+    void uploadStream_ShouldGenerateRecordedVariantsServedByWidth() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/media/upload");
+        request.setContentType("image/png");
+        request.setContent(png(1000, 600));
+
+        Media m = (Media) asSeller(() -> mediaController.uploadStream("product-123", request)).getBody();
+        String filename = m.getImagePath().substring(m.getImagePath().lastIndexOf('/') + 1);
+        mediaStorage.fetch(filename).toFile().deleteOnExit();
+
+        List<Integer> variants = null;
+        for (int i = 0; i < 100 && variants == null; i++) {
+            variants = mediaRepository.findById(m.getId()).orElseThrow().getVariants();
+            if (variants == null) Thread.sleep(50);
+        }
+        assertEquals(List.of(800, 400, 200), variants);
+        ResponseEntity<?> response = mediaController.file(filename, 250, new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+        assertEquals(200, response.getStatusCodeValue());
+        assertTrue(response.getHeaders().getFirst("Content-Disposition").contains("-w400."));
+        Resource body = (Resource) response.getBody();
+        assertEquals(400, javax.imageio.ImageIO.read(body.getInputStream()).getWidth());
+        deleteVariants(filename);
+    }
+
+    @Test
+    void file_ShouldNegotiateSmallestAcceptableEncoding() throws Exception {
+        // noise compresses badly as PNG, so the JPEG re-encoding is much smaller
+        java.awt.image.BufferedImage noise = new java.awt.image.BufferedImage(500, 400, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.util.Random random = new java.util.Random(7);
+        for (int x = 0; x < 500; x++) for (int y = 0; y < 400; y++) noise.setRGB(x, y, random.nextInt(0x1000000));
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(noise, "png", png);
+        MockHttpServletRequest upload = new MockHttpServletRequest("POST", "/api/media/upload");
+        upload.setContentType("image/png");
+        upload.setContent(png.toByteArray());
+        Media m = (Media) asSeller(() -> mediaController.uploadStream("product-123", upload)).getBody();
+        String filename = m.getImagePath().substring(m.getImagePath().lastIndexOf('/') + 1);
+        mediaStorage.fetch(filename).toFile().deleteOnExit();
+        for (int i = 0; i < 100 && mediaRepository.findById(m.getId()).orElseThrow().getVariants() == null; i++) Thread.sleep(50);
+
+        MockHttpServletRequest browser = new MockHttpServletRequest("GET", "/");
+        browser.addHeader("Accept", "image/png,image/*;q=0.8,*/*;q=0.5");
+        MockHttpServletResponse browserResponse = new MockHttpServletResponse();
+        ResponseEntity<?> negotiated = mediaController.file(filename, null, browser, browserResponse);
+        assertTrue(negotiated.getHeaders().getFirst("Content-Disposition").contains("-full.jpg"));
+        assertEquals("image/jpeg", negotiated.getHeaders().getContentType().toString());
+        assertEquals("Accept", browserResponse.getHeader("Vary"));
+
+        MockHttpServletRequest pngOnly = new MockHttpServletRequest("GET", "/");
+        pngOnly.addHeader("Accept", "image/png");
+        ResponseEntity<?> strict = mediaController.file(filename, null, pngOnly, new MockHttpServletResponse());
+        assertEquals("image/png", strict.getHeaders().getContentType().toString());
+
+        // remembered per set of acceptable encodings, not per header string, until the variants go
+        ImageVariants.Choice remembered = imageVariants.remembered(filename, null, "image/*,*/*;q=0.8");
+        assertTrue(remembered.file().getFileName().toString().endsWith("-full.jpg"));
+        assertNotNull(imageVariants.remembered(filename, null, "image/png"));
+        assertNull(imageVariants.remembered(filename, 200, "image/png"));
+        deleteVariants(filename);
+        assertNull(imageVariants.remembered(filename, null, "image/png"));
+    }
+
+    @Test
+    void file_WidthForLegacyUpload_ShouldGenerateLazilyAndNeverUpscale() throws Exception {
+        Path dir = Paths.get("uploads");
+        String name = "test-" + java.util.UUID.randomUUID() + ".png";
+        Files.write(dir.resolve(name), png(300, 300));
+        dir.resolve(name).toFile().deleteOnExit();
+
+        ResponseEntity<?> small = mediaController.file(name, 200, new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+        assertTrue(small.getHeaders().getFirst("Content-Disposition").contains("-w200.png"));
+        ResponseEntity<?> large = mediaController.file(name, 800, new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+        assertTrue(large.getHeaders().getFirst("Content-Disposition").contains(name), "original is served, not upscaled");
+        deleteVariants(name);
+    }
+
+    @Test
+    void uploadStream_SameBytesTwice_ShouldShareOneFileUntilLastDelete() throws Exception {
+        byte[] gif = { 'G', 'I', 'F', '8', '9', 'a', 9, 8, 7, 6 };
+        Media first = (Media) asSeller(() -> mediaController.uploadStream("product-123", gifUpload(gif))).getBody();
+        Media second = (Media) asSeller(() -> mediaController.uploadStream("product-456", gifUpload(gif))).getBody();
+        String filename = first.getImagePath().substring(first.getImagePath().lastIndexOf('/') + 1);
+        Path stored = mediaStorage.fetch(filename);
+        stored.toFile().deleteOnExit();
+
+        assertEquals(first.getImagePath(), second.getImagePath());
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(2, mongo.findById(filename, MediaBlob.class).getRefs());
+
+        assertEquals(204, asSeller(() -> mediaController.delete(first.getId())).getStatusCodeValue());
+        assertTrue(Files.exists(stored), "still referenced by the second upload");
+        assertEquals(204, asSeller(() -> mediaController.delete(second.getId())).getStatusCodeValue());
+        assertFalse(Files.exists(stored));
+        assertNull(mongo.findById(filename, MediaBlob.class));
+        assertEquals(0, mediaRepository.count());
+    }
+
+    @Test
+    void uploadStream_SaveFails_ShouldReleaseTheReference() throws Exception {
+        byte[] gif = { 'G', 'I', 'F', '8', '9', 'a', 3, 1, 4, 1, 5 };
+        MediaController failing = new MediaController(failingSaves(mediaRepository), fileResponder, hotFiles, productSync,
+            urls, uploads, imageVariants, blobs, mediaStorage, 100);
+
+        assertEquals(500, asSeller(() -> failing.uploadStream("product-123", gifUpload(gif))).getStatusCodeValue());
+        assertEquals(0, mongo.count(new Query(), MediaBlob.class), "the only reference is given back and the file collected");
+        assertEquals(0, mediaRepository.count());
+
+        Media kept = (Media) asSeller(() -> mediaController.uploadStream("product-123", gifUpload(gif))).getBody();
+        String filename = kept.getImagePath().substring(kept.getImagePath().lastIndexOf('/') + 1);
+        assertEquals(500, asSeller(() -> failing.uploadStream("product-456", gifUpload(gif))).getStatusCodeValue());
+        assertEquals(1, mongo.findById(filename, MediaBlob.class).getRefs());
+        assertTrue(mediaStorage.exists(filename), "still referenced by the first upload");
+        asSeller(() -> mediaController.delete(kept.getId()));
+        assertFalse(mediaStorage.exists(filename));
+    }
+
+    @Test
+    void file_HotOriginal_ShouldNotTouchTheStore() throws Exception {
+        byte[] gif = { 'G', 'I', 'F', '8', '9', 'a', 2, 7, 1, 8, 2, 8 };
+        Media m = (Media) asSeller(() -> mediaController.uploadStream("product-123", gifUpload(gif))).getBody();
+        String filename = m.getImagePath().substring(m.getImagePath().lastIndexOf('/') + 1);
+        AtomicInteger fetches = new AtomicInteger();
+        MediaStorage counting = (MediaStorage) Proxy.newProxyInstance(MediaStorage.class.getClassLoader(), new Class<?>[] { MediaStorage.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("fetch")) fetches.incrementAndGet();
+                try {
+                    return method.invoke(mediaStorage, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        HotFileCache hot = new HotFileCache(true, 1024, 512, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        MediaController cached = new MediaController(mediaRepository, new FileResponder(hot), hot, productSync,
+            urls, uploads, imageVariants, blobs, counting, 100);
+
+        for (int i = 0; i < 2; i++) cached.file(filename, null, new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+        assertEquals(2, fetches.get(), "the first request is served from disk, the second loads it");
+        MockHttpServletResponse third = new MockHttpServletResponse();
+        assertNull(cached.file(filename, null, new MockHttpServletRequest("GET", "/"), third));
+
+        assertEquals(2, fetches.get());
+        assertArrayEquals(gif, third.getContentAsByteArray());
+        asSeller(() -> mediaController.delete(m.getId()));
+    }
+
+    private static MediaRepository failingSaves(MediaRepository delegate) {
+        return (MediaRepository) Proxy.newProxyInstance(MediaRepository.class.getClassLoader(), new Class<?>[] { MediaRepository.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("save")) throw new IllegalStateException("mongo unavailable");
+                try {
+                    return method.invoke(delegate, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    @Test
+    void delete_SomeoneElsesMedia_ShouldReturnForbidden() {
+        Media m = new Media("http://example.com/image1.jpg", "product-123");
+        m.setOwnerId("seller2");
+        mediaRepository.save(m);
+
+        assertEquals(403, asSeller(() -> mediaController.delete(m.getId())).getStatusCodeValue());
+        assertEquals(1, mediaRepository.count());
+    }
+
+    @Test
+    void file_ContentAddressed_ShouldBeCachedAsImmutable() throws Exception {
+        byte[] gif = { 'G', 'I', 'F', '8', '9', 'a', 4, 5, 6 };
+        Media m = (Media) asSeller(() -> mediaController.uploadStream("product-123", gifUpload(gif))).getBody();
+        String filename = m.getImagePath().substring(m.getImagePath().lastIndexOf('/') + 1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        mediaController.file(filename, null, new MockHttpServletRequest("GET", "/"), response);
+
+        assertEquals("max-age=31536000, public, immutable", response.getHeader("Cache-Control"));
+        asSeller(() -> mediaController.delete(m.getId()));
+        MockHttpServletResponse legacy = new MockHttpServletResponse();
+        mediaController.file(writeUpload("abc"), null, new MockHttpServletRequest("GET", "/"), legacy);
+        assertNull(legacy.getHeader("Cache-Control"));
+    }
+
+    private static MockHttpServletRequest gifUpload(byte[] gif) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/media/upload");
+        request.setContentType("image/gif");
+        request.setContent(gif);
+        return request;
+    }
+
+    private void deleteVariants(String filename) throws Exception {
+        imageVariants.delete(filename);
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) image.setRGB(x, x * height / width, 0xff0000);
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void file_Existing_ShouldStreamWithValidators() throws Exception {
+        String name = writeUpload("abcdefghij");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/media/file/" + name);
+
+        ResponseEntity<?> response = mediaController.file(name, null, request, new MockHttpServletResponse());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertTrue(response.getBody() instanceof Resource, "file should be streamed, not buffered");
+        assertNotNull(response.getHeaders().getETag());
+        assertTrue(response.getHeaders().getLastModified() > 0);
+        assertEquals("image/png", response.getHeaders().getContentType().toString());
+    }
+
+    @Test
+    void file_MatchingETag_ShouldReturnNotModified() throws Exception {
+        String name = writeUpload("abcdefghij");
+        String etag = mediaController.file(name, null, new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse())
+            .getHeaders().getETag();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/media/file/" + name);
+        request.addHeader("If-None-Match", etag);
+
+        ResponseEntity<?> response = mediaController.file(name, null, request, new MockHttpServletResponse());
+
+        assertEquals(304, response.getStatusCodeValue());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void file_RangeWithSendfile_ShouldHandOffPartialContent() throws Exception {
+        String name = writeUpload("abcdefghij");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/media/file/" + name);
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+
+        ResponseEntity<?> response = mediaController.file(name, null, request, servletResponse);
+
+        assertNull(response, "body is written by the container via sendfile");
+        assertEquals(206, servletResponse.getStatus());
+        assertEquals("bytes 2-5/10", servletResponse.getHeader("Content-Range"));
+        assertEquals(4, servletResponse.getContentLengthLong());
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void file_Missing_ShouldReturnNotFound() {
+        ResponseEntity<?> response = mediaController.file("does-not-exist.png", null, new MockHttpServletRequest(), new MockHttpServletResponse());
+        assertEquals(404, response.getStatusCodeValue());
+    }
+
+    private static <T> T asSeller(java.util.function.Supplier<T> call) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("seller1", null, "ROLE_SELLER"));
+        try {
+            return call.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static String writeUpload(String content) throws Exception {
+        Path dir = Paths.get("uploads");
+        Files.createDirectories(dir);
+        String name = "test-" + java.util.UUID.randomUUID() + ".png";
+        Path f = dir.resolve(name);
+        Files.writeString(f, content);
+        f.toFile().deleteOnExit();
+        return name;
+    }
+}
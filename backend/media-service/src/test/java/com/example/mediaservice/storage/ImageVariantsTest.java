@@ -0,0 +1,55 @@
+package com.example.mediaservice.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantsTest {
+
+    @Test
+    void acceptable_ShouldHonourQualityAndOnlyServeWebpWhenNamed() {
+        List<MediaType> chrome = MediaType.parseMediaTypes("image/avif,image/webp,image/apng,image/*,*/*;q=0.8");
+        List<MediaType> legacy = MediaType.parseMediaTypes("image/png,image/*;q=0.8,*/*;q=0.5");
+        List<MediaType> noJpeg = MediaType.parseMediaTypes("image/jpeg;q=0,image/*");
+
+        assertTrue(ImageVariants.acceptable("image/webp", chrome));
+        assertTrue(ImageVariants.acceptable("image/jpeg", chrome));
+        assertFalse(ImageVariants.acceptable("image/webp", legacy), "image/* alone does not promise WebP support");
+        assertTrue(ImageVariants.acceptable("image/jpeg", legacy));
+        assertFalse(ImageVariants.acceptable("image/jpeg", noJpeg));
+        assertTrue(ImageVariants.acceptable("image/png", noJpeg));
+    }
+
+    @Test
+    void scale_ShouldKeepAspectRatio() {
+        BufferedImage scaled = ImageVariants.scale(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), 200);
+        assertEquals(200, scaled.getWidth());
+        assertEquals(100, scaled.getHeight());
+    }
+
+    @Test
+    void exifOrientation_ShouldBeReadAndApplied() {
+        // "Exif\0\0", big-endian TIFF header, IFD0 with one entry: orientation (SHORT) = 6
+        byte[] app1 = {
+            'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1,
+            0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0,
+            0, 0, 0, 0
+        };
+        assertEquals(6, ExifOrientation.parse(app1));
+        assertEquals(1, ExifOrientation.parse(new byte[] { 'J', 'F', 'I', 'F' }));
+
+        BufferedImage stored = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        stored.setRGB(0, 0, 0xff0000);
+        BufferedImage upright = ExifOrientation.apply(stored, 6);
+        assertEquals(20, upright.getWidth());
+        assertEquals(40, upright.getHeight());
+        // rotating 90 degrees clockwise moves the top-left pixel to the top-right
+        assertEquals(0xff0000, upright.getRGB(19, 0) & 0xffffff);
+    }
+}
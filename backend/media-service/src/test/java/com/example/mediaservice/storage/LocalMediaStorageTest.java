@@ -0,0 +1,61 @@
+package com.example.mediaservice.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMediaStorageTest {
+    private static final String DIGEST_NAME = "ab12" + "0".repeat(60) + ".png";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void put_ShouldShardByDigestAndStoreDuplicatesOnce() throws Exception {
+        LocalMediaStorage storage = new LocalMediaStorage(dir.toString(), false);
+
+        assertTrue(storage.put(DIGEST_NAME, Files.writeString(dir.resolve(".upload-1.part"), "abc")));
+        Path duplicate = Files.writeString(dir.resolve(".upload-2.part"), "abc");
+        assertFalse(storage.put(DIGEST_NAME, duplicate));
+
+        assertEquals(dir.resolve("ab").resolve("12").resolve(DIGEST_NAME), storage.fetch(DIGEST_NAME));
+        assertFalse(Files.exists(duplicate), "the duplicate's temp file is dropped");
+        assertNull(storage.fetch("../" + DIGEST_NAME));
+        assertNull(storage.fetch("missing.png"));
+    }
+
+    @Test
+    void migrate_ShouldMoveFlatFilesIntoShardsAndKeepThemReadable() throws Exception {
+        String legacy = "0f8fad5b-d9cb-469f-a165-70867728950e.jpg";
+        Files.writeString(dir.resolve(legacy), "legacy");
+        Files.writeString(dir.resolve(DIGEST_NAME), "digest");
+        Path partial = Files.writeString(dir.resolve(".upload-3.part"), "partial");
+        LocalMediaStorage storage = new LocalMediaStorage(dir.toString(), false);
+
+        assertEquals(dir.resolve(legacy), storage.fetch(legacy), "flat files are served before migration");
+        assertEquals(2, Shards.migrate(dir, UnaryOperator.identity()));
+
+        assertFalse(Files.exists(dir.resolve(legacy)));
+        assertEquals("legacy", Files.readString(storage.fetch(legacy)));
+        assertEquals(dir.resolve("ab").resolve("12").resolve(DIGEST_NAME), storage.fetch(DIGEST_NAME));
+        assertTrue(Files.exists(partial), "uploads in progress are left alone");
+    }
+
+    @Test
+    void moveAndDelete_ShouldFindFilesInEitherLayout() throws Exception {
+        Files.writeString(dir.resolve(DIGEST_NAME), "digest");
+        LocalMediaStorage storage = new LocalMediaStorage(dir.toString(), false);
+
+        assertTrue(storage.move(DIGEST_NAME, DIGEST_NAME + ".deleting"));
+        assertFalse(storage.exists(DIGEST_NAME));
+        assertFalse(storage.move(DIGEST_NAME, DIGEST_NAME + ".deleting"));
+        assertTrue(storage.move(DIGEST_NAME + ".deleting", DIGEST_NAME));
+        storage.delete(DIGEST_NAME);
+        assertFalse(storage.exists(DIGEST_NAME));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.mediaservice.storage;
+
+import com.example.mediaservice.web.FileResponder;
+import com.example.mediaservice.web.HotFileCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedMediaStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void put_SmallBlobsArePackedLargeOnesStayFiles() throws Exception {
+        PackedMediaStorage storage = open(1 << 20, 16);
+
+        assertTrue(storage.put("a.png", upload("small")));
+        assertFalse(storage.put("a.png", upload("small")));
+        assertTrue(storage.put("b.png", upload("larger than sixteen bytes")));
+
+        assertEquals("small", text(storage.slice("a.png")));
+        assertNull(storage.fetch("a.png"), "packed blobs have no file");
+        assertNull(storage.slice("b.png"));
+        assertEquals("larger than sixteen bytes", Files.readString(storage.fetch("b.png")));
+        assertTrue(storage.exists("a.png"));
+        assertTrue(storage.exists("b.png"));
+        try (var leftovers = Files.list(dir).filter(p -> p.getFileName().toString().startsWith("upload"))) {
+            assertEquals(0, leftovers.count(), "staged files are consumed");
+        }
+    }
+
+    @Test
+    void reopen_ShouldRebuildIndexFromFootersAndRepairTornTail() throws Exception {
+        PackedMediaStorage storage = open(64, 1024);
+        for (int i = 0; i < 6; i++) storage.put("blob" + i + ".png", upload("content-" + i));
+        storage.delete("blob1.png");
+        storage.move("blob2.png", "blob2.png.deleting");
+        storage.close();
+        // a write torn by a crash at the end of the active segment
+        Path last;
+        try (var packs = Files.list(dir.resolve("packs"))) {
+            last = packs.sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        Files.write(last, new byte[] { 0x4d, 0x42, 0x4c, 0x42, 1, 0 }, StandardOpenOption.APPEND);
+
+        PackedMediaStorage reopened = open(64, 1024);
+
+        assertEquals("content-0", text(reopened.slice("blob0.png")));
+        assertNull(reopened.slice("blob1.png"));
+        assertNull(reopened.slice("blob2.png"));
+        assertEquals("content-2", text(reopened.slice("blob2.png.deleting")));
+        assertEquals("content-5", text(reopened.slice("blob5.png")));
+        assertTrue(reopened.put("blob6.png", upload("content-6")));
+        assertEquals("content-6", text(reopened.slice("blob6.png")));
+    }
+
+    @Test
+    void compact_ShouldDropDeadSegmentsAndKeepDeletesDeleted() throws Exception {
+        PackedMediaStorage storage = open(1 << 20, 1024);
+        for (int i = 0; i < 4; i++) storage.put("blob" + i + ".png", upload("content-" + i));
+        storage.roll();
+        for (int i = 0; i < 3; i++) storage.delete("blob" + i + ".png");
+        storage.roll();
+        long before;
+        try (var packs = Files.list(dir.resolve("packs"))) {
+            before = packs.count();
+        }
+
+        storage.compact();
+
+        try (var packs = Files.list(dir.resolve("packs"))) {
+            assertEquals(before - 2, packs.count(), "the mostly dead segment and the deletes aimed at it are gone");
+        }
+        assertEquals("content-3", text(storage.slice("blob3.png")));
+        storage.roll();
+        assertEquals("content-3", text(storage.slice("blob3.png")), "readable once its new segment is sealed");
+        storage.close();
+        PackedMediaStorage reopened = open(1 << 20, 1024);
+        assertNull(reopened.slice("blob0.png"));
+        assertEquals("content-3", text(reopened.slice("blob3.png")));
+    }
+
+    @Test
+    void slice_ShouldBeServedWithRangesWithoutAFile() throws Exception {
+        PackedMediaStorage storage = open(1 << 20, 1024);
+        storage.put("thumb.png", upload("0123456789"));
+        MediaStorage.Slice slice = storage.slice("thumb.png");
+        FileResponder responder = new FileResponder(new HotFileCache(false, 0, 0, Duration.ofMinutes(1), registry));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=3-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(responder.serve(slice.data(), slice.lastModified(), "thumb.png", request, response));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("345", response.getContentAsString());
+        assertEquals("image/png", response.getContentType());
+    }
+
+    private PackedMediaStorage open(long segmentBytes, long maxBlobBytes) throws Exception {
+        return new PackedMediaStorage(dir.toString(), false, segmentBytes, maxBlobBytes, 0.5, registry);
+    }
+
+    private Path upload(String content) throws Exception {
+        return Files.writeString(Files.createTempFile(dir, "upload", ".part"), content);
+    }
+
+    private static String text(MediaStorage.Slice slice) {
+        ByteBuffer data = slice.data().duplicate();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.mediaservice.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs against a minimal in-process stand-in for an S3 endpoint (path-style PUT, copy, GET,
+// HEAD and DELETE) that checks every request's Signature V4 the way the real service would.
+class S3MediaStorageTest {
+    private static final String NAME = "cd34" + "0".repeat(60) + ".png";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger gets = new AtomicInteger();
+    private S3MediaStorage verifier;
+
+    @BeforeEach
+    void startStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        verifier = storage("verifier");
+    }
+
+    @AfterEach
+    void stopStandIn() {
+        server.stop(0);
+    }
+
+    @Test
+    void putAndFetch_ShouldStoreOnceAndServeFromTheLocalCache() throws Exception {
+        S3MediaStorage storage = storage("a");
+
+        assertTrue(storage.put(NAME, Files.writeString(dir.resolve("upload-1"), "abc")));
+        Path duplicate = Files.writeString(dir.resolve("upload-2"), "abc");
+        assertFalse(storage.put(NAME, duplicate));
+
+        assertFalse(Files.exists(duplicate));
+        assertArrayEquals("abc".getBytes(), objects.get("/media/originals/" + NAME));
+        assertEquals("abc", Files.readString(storage.fetch(NAME)));
+        assertEquals(0, gets.get(), "the upload seeded the cache");
+
+        // another instance downloads it once
+        S3MediaStorage other = storage("b");
+        assertEquals("abc", Files.readString(other.fetch(NAME)));
+        assertEquals(other.fetch(NAME), other.fetch(NAME));
+        assertEquals(1, gets.get());
+        assertNull(other.fetch("missing.png"));
+    }
+
+    @Test
+    void moveAndDelete_ShouldCopyServerSideAndRemove() throws Exception {
+        S3MediaStorage storage = storage("a");
+        storage.put(NAME, Files.writeString(dir.resolve("upload-1"), "abc"));
+
+        assertTrue(storage.move(NAME, NAME + ".deleting"));
+        assertFalse(storage.exists(NAME));
+        assertTrue(storage.exists(NAME + ".deleting"));
+        assertFalse(storage.move(NAME, NAME + ".deleting"));
+
+        storage.delete(NAME + ".deleting");
+        assertTrue(objects.isEmpty());
+    }
+
+    @Test
+    void purgeEvicted_ShouldKeepEvictedFilesUntilTheDelayHasPassed() throws Exception {
+        // nothing fits, so every copy is evicted as soon as it is cached
+        S3MediaStorage storage = storage("a", 0);
+        storage.put(NAME, Files.writeString(dir.resolve("upload-1"), "abc"));
+
+        Path fetched = storage.fetch(NAME);
+        Path again = storage.fetch(NAME);
+
+        assertNotEquals(fetched, again, "a new download never reuses an evicted copy's file");
+        assertEquals("abc", Files.readString(fetched), "still there for whoever was handed it");
+        storage.purgeEvicted();
+        assertFalse(Files.exists(fetched));
+        assertFalse(Files.exists(again));
+        assertFalse(Files.exists(fetched.getParent()));
+    }
+
+    private S3MediaStorage storage(String instance) throws IOException {
+        return storage(instance, 1 << 20);
+    }
+
+    private S3MediaStorage storage(String instance, long cacheMaxBytes) throws IOException {
+        return new S3MediaStorage("http://127.0.0.1:" + server.getAddress().getPort(), "media", "originals/", "us-east-1",
+            "test-access", "test-secret", Duration.ofSeconds(5), dir.resolve(instance).toString(), cacheMaxBytes, Duration.ZERO);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            String path = ex.getRequestURI().getRawPath();
+            byte[] body = ex.getRequestBody().readAllBytes();
+            if (!signatureValid(ex, method, path)) {
+                ex.sendResponseHeaders(403, -1);
+                return;
+            }
+            String copySource = ex.getRequestHeaders().getFirst("x-amz-copy-source");
+            switch (method) {
+                case "PUT" -> {
+                    if (copySource != null) {
+                        byte[] source = objects.get(copySource);
+                        if (source == null) {
+                            ex.sendResponseHeaders(404, -1);
+                            return;
+                        }
+                        objects.put(path, source);
+                        byte[] result = "<CopyObjectResult/>".getBytes(StandardCharsets.UTF_8);
+                        ex.sendResponseHeaders(200, result.length);
+                        ex.getResponseBody().write(result);
+                    } else {
+                        objects.put(path, body);
+                        ex.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "GET" -> {
+                    gets.incrementAndGet();
+                    byte[] data = objects.get(path);
+                    if (data == null) {
+                        ex.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                    ex.sendResponseHeaders(200, data.length);
+                    ex.getResponseBody().write(data);
+                }
+                case "HEAD" -> ex.sendResponseHeaders(objects.containsKey(path) ? 200 : 404, -1);
+                case "DELETE" -> {
+                    objects.remove(path);
+                    ex.sendResponseHeaders(204, -1);
+                }
+                default -> ex.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private boolean signatureValid(HttpExchange ex, String method, String path) {
+        String authorization = ex.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) return false;
+        String signedHeaders = authorization.replaceAll(".*SignedHeaders=([^,]+),.*", "$1");
+        Map<String, String> headers = new TreeMap<>();
+        for (String h : signedHeaders.split(";")) {
+            String value = ex.getRequestHeaders().getFirst(h);
+            if (value == null) return false;
+            headers.put(h, value);
+        }
+        return authorization.equals(verifier.authorization(method, path, headers,
+            headers.get("x-amz-content-sha256"), headers.get("x-amz-date")));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mediaservice.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadWriterTest {
+    private static final byte[] PNG_MAGIC = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stage_Png_ShouldNameByDigestAndDetectedType() throws Exception {
+        UploadWriter writer = new UploadWriter(dir.toString(), 1024 * 1024);
+        byte[] png = new byte[200_000];
+        System.arraycopy(PNG_MAGIC, 0, png, 0, PNG_MAGIC.length);
+        for (int i = PNG_MAGIC.length; i < png.length; i++) png[i] = (byte) i;
+
+        UploadWriter.Staged stored = writer.stage(new ByteArrayInputStream(png));
+
+        assertEquals(stored.sha256() + ".png", stored.filename());
+        assertEquals("image/png", stored.contentType());
+        assertEquals(png.length, stored.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png)), stored.sha256());
+        assertArrayEquals(png, Files.readAllBytes(stored.temp()));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void stage_WrongMagicOrTooLarge_ShouldRejectAndLeaveNothing() throws Exception {
+        UploadWriter writer = new UploadWriter(dir.toString(), 16);
+
+        assertThrows(UploadWriter.Rejected.class, () -> writer.stage(new ByteArrayInputStream("<svg onload=x>".getBytes())));
+        assertThrows(UploadWriter.Rejected.class, () -> writer.stage(new ByteArrayInputStream(new byte[0])));
+        byte[] big = new byte[17];
+        big[0] = 'G'; big[1] = 'I'; big[2] = 'F'; big[3] = '8'; big[4] = '9'; big[5] = 'a';
+        assertThrows(UploadWriter.Rejected.class, () -> writer.stage(new ByteArrayInputStream(big)));
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void constructor_ShouldRemovePartialUploadsFromACrash() throws Exception {
+        Path partial = Files.createFile(dir.resolve(".upload-123.part"));
+        Path kept = Files.createFile(dir.resolve("a.png"));
+
+        new UploadWriter(dir.toString(), 16);
+
+        assertFalse(Files.exists(partial));
+        assertTrue(Files.exists(kept));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.mediaservice.sync;
+
+import com.example.mediaservice.model.ProductSyncTask;
+import com.example.mediaservice.repository.ProductSyncTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+// keep the application's own sweeper from claiming the tasks these tests deliver by hand
+@TestPropertySource(properties = "media.sync.sweep-interval=3600000")
+class ProductSyncOutboxTest {
+
+    @Autowired
+    private ProductSyncTaskRepository tasks;
+
+    @Autowired
+    private MongoTemplate mongo;
+
+    private final StubClient client = new StubClient();
+
+    @BeforeEach
+    void cleanup() {
+        tasks.deleteAll();
+    }
+
+    @Test
+    void deliver_Success_ShouldRemoveTask() {
+        ProductSyncOutbox outbox = new ProductSyncOutbox(tasks, mongo, client, 1, 10, false);
+        ProductSyncTask task = tasks.save(new ProductSyncTask("media-1", "product-1", Instant.now()));
+
+        outbox.deliver(task.getId());
+
+        assertEquals(List.of("product-1:media-1"), client.calls);
+        assertTrue(tasks.findById(task.getId()).isEmpty());
+    }
+
+    @Test
+    void deliver_Failure_ShouldRescheduleWithBackoff() {
+        client.failure = new ResourceAccessException("connection refused");
+        ProductSyncOutbox outbox = new ProductSyncOutbox(tasks, mongo, client, 1, 10, false);
+        ProductSyncTask task = tasks.save(new ProductSyncTask("media-2", "product-2", Instant.now()));
+
+        outbox.deliver(task.getId());
+
+        ProductSyncTask after = tasks.findById(task.getId()).orElseThrow();
+        assertEquals(1, after.getAttempts());
+        assertTrue(after.getNextAttemptAt().isAfter(Instant.now()));
+        assertNotNull(after.getLastError());
+
+        // not due yet: a second delivery attempt must not call product-service again
+        outbox.deliver(task.getId());
+        assertEquals(1, client.calls.size());
+    }
+
+    @Test
+    void deliver_ProductGone_ShouldDropTask() {
+        client.failure = HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+        ProductSyncOutbox outbox = new ProductSyncOutbox(tasks, mongo, client, 1, 10, false);
+        ProductSyncTask task = tasks.save(new ProductSyncTask("media-3", "missing", Instant.now()));
+
+        outbox.deliver(task.getId());
+
+        assertTrue(tasks.findById(task.getId()).isEmpty());
+    }
+
+    @Test
+    void enqueue_ShouldPersistAndDeliverAsynchronously() throws Exception {
+        ProductSyncOutbox outbox = new ProductSyncOutbox(tasks, mongo, client, 1, 10, false);
+
+        outbox.enqueue("media-4", "product-4");
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (tasks.count() > 0 && System.nanoTime() < deadline) Thread.sleep(20);
+        assertEquals(0, tasks.count());
+        assertEquals(List.of("product-4:media-4"), client.calls);
+    }
+
+    @Test
+    void enqueueDetach_ShouldDropPendingAttachAndDetach() throws Exception {
+        ProductSyncOutbox outbox = new ProductSyncOutbox(tasks, mongo, client, 1, 10, false);
+        tasks.save(new ProductSyncTask("media-5", "product-5", Instant.now().plusSeconds(60))); // backing off
+
+        outbox.enqueueDetach("media-5", "product-5");
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (tasks.count() > 0 && System.nanoTime() < deadline) Thread.sleep(20);
+        assertEquals(0, tasks.count());
+        assertEquals(List.of("-product-5:media-5"), client.calls);
+    }
+
+    static class StubClient extends ProductSyncClient {
+        final List<String> calls = new ArrayList<>();
+        RuntimeException failure;
+
+        StubClient() {
+            super(1, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return true;
+        }
+
+        @Override
+        public synchronized void attachImage(String productId, String mediaId) {
+            calls.add(productId + ":" + mediaId);
+            if (failure != null) throw failure;
+        }
+
+        @Override
+        public synchronized void detachImage(String productId, String mediaId) {
+            calls.add("-" + productId + ":" + mediaId);
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.mediaservice.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void serve_HotFile_ShouldBeAnsweredFromMemory() throws Exception {
+        HotFileCache cache = new HotFileCache(true, 1024, 512, Duration.ofMinutes(10), registry);
+        FileResponder responder = new FileResponder(cache);
+        Path f = Files.writeString(dir.resolve("thumb.png"), "0123456789");
+
+        // the first request is served from disk and leaves nothing in memory
+        ResponseEntity<?> first = responder.serve(f, "thumb.png", new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+        assertInstanceOf(FileSystemResource.class, first.getBody());
+        assertNull(cache.get("thumb.png"));
+
+        MockHttpServletResponse repeat = new MockHttpServletResponse();
+        assertNull(responder.serve(f, "thumb.png", new MockHttpServletRequest("GET", "/"), repeat));
+        assertEquals("0123456789", repeat.getContentAsString());
+
+        // from then on the file is not needed at all
+        Files.delete(f);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=3-");
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        assertNull(responder.serve(f, "thumb.png", request, second));
+        assertEquals(206, second.getStatus());
+        assertEquals("3456789", second.getContentAsString());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "media.files").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void serve_LargeFile_ShouldBypassCache() throws Exception {
+        HotFileCache cache = new HotFileCache(true, 1024, 4, Duration.ofMinutes(10), registry);
+        FileResponder responder = new FileResponder(cache);
+        Path f = Files.writeString(dir.resolve("big.png"), "0123456789");
+
+        ResponseEntity<?> response = responder.serve(f, "big.png", new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertNull(cache.get("big.png"));
+    }
+
+    @Test
+    void admitsRepeat_ShouldLoadOnlyOnTheSecondRequest() {
+        HotFileCache cache = new HotFileCache(true, 1024, 512, Duration.ofMinutes(10), registry);
+
+        assertFalse(cache.admitsRepeat("a.png", 10));
+        assertTrue(cache.admitsRepeat("a.png", 10));
+        assertFalse(cache.admitsRepeat("b.png", 10));
+        cache.invalidate("b.png");
+        assertFalse(cache.admitsRepeat("b.png", 10), "a deleted file starts over");
+        assertFalse(cache.admitsRepeat("big.png", 1000));
+        assertFalse(cache.admitsRepeat("big.png", 1000));
+    }
+
+    @Test
+    void invalidate_ShouldDropEntry() throws Exception {
+        HotFileCache cache = new HotFileCache(true, 1024, 512, Duration.ofMinutes(10), registry);
+        Path f = Files.writeString(dir.resolve("a.png"), "abc");
+        cache.load("a.png", f, 3, 0);
+        assertNotNull(cache.get("a.png"));
+
+        cache.invalidate("a.png");
+
+        assertNull(cache.get("a.png"));
+    }
+
+    @Test
+    void disabled_ShouldNeverAdmit() {
+        HotFileCache cache = new HotFileCache(false, 1024, 512, Duration.ofMinutes(10), registry);
+        assertFalse(cache.admits(10));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.productservice.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Embedded stand-in for a distributed tier (products.cache.tier=memory): one shared map and
+// listener list per instance. Several ProductCache instances sharing it behave like replicas
+// sharing a real store, which is how the tests exercise cross-replica invalidation.
+@Component
+@ConditionalOnProperty(name = "products.cache.tier", havingValue = "memory")
+public class InMemoryProductCacheTier implements ProductCacheTier {
+    private record Stored(Entry entry, long expiresAt) {}
+
+    private final Map<String, Stored> entries = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Entry get(String id) {
+        Stored s = entries.get(id);
+        if (s == null) return null;
+        if (s.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(id, s);
+            return null;
+        }
+        return s.entry();
+    }
+
+    @Override
+    public void put(String id, Entry entry, Duration ttl) {
+        entries.put(id, new Stored(entry, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    @Override
+    public void evict(String id) {
+        entries.remove(id);
+        for (Consumer<String> l : listeners) l.accept(id);
+    }
+
+    @Override
+    public void subscribe(Consumer<String> invalidations) {
+        listeners.add(invalidations);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.productservice.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.productservice.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Read-through cache of products by id. Misses are cached too (for a shorter negative-ttl) so
+// repeated lookups of unknown ids don't reach Mongo. Writers call evict(id) after the write;
+// Caffeine serialises that against an in-flight load of the same id, so a load that read the
+// old document cannot repopulate the cache after the eviction.
+// With a ProductCacheTier bean present, L1 misses consult it before Mongo and evictions are
+// broadcast through it to the other replicas. Exposed in actuator as cache.*{cache=products.byId}.
+@Component
+public class ProductCache {
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final Cache<String, Optional<Product>> local;
+    private final ProductCacheTier tier;
+
+    public ProductCache(@Value("${products.cache.enabled:true}") boolean enabled,
+                        @Value("${products.cache.max-size:10000}") long maxSize,
+                        @Value("${products.cache.ttl:5m}") Duration ttl,
+                        @Value("${products.cache.negative-ttl:30s}") Duration negativeTtl,
+                        ObjectProvider<ProductCacheTier> tier,
+                        MeterRegistry registry) {
+        this.enabled = enabled && maxSize > 0;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.local = Caffeine.newBuilder()
+            .maximumSize(Math.max(0, maxSize))
+            .expireAfter(new Expiry<String, Optional<Product>>() {
+                @Override
+                public long expireAfterCreate(String id, Optional<Product> value, long now) {
+                    return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String id, Optional<Product> value, long now, long current) {
+                    return expireAfterCreate(id, value, now);
+                }
+
+                @Override
+                public long expireAfterRead(String id, Optional<Product> value, long now, long current) {
+                    return current;
+                }
+            })
+            .recordStats()
+            .build();
+        this.tier = this.enabled ? tier.getIfAvailable() : null;
+        if (this.tier != null) this.tier.subscribe(local::invalidate);
+        CaffeineCacheMetrics.monitor(registry, local, "products.byId");
+    }
+
+    // Returns the cached lookup for id, calling loader (normally repo::findById) on a miss.
+    public Optional<Product> get(String id, Function<String, Optional<Product>> loader) {
+        if (!enabled) return loader.apply(id);
+        return local.get(id, key -> loadThroughTier(key, loader));
+    }
+
+    // The cached product, or null when it is not cached (or cached as missing). Never loads.
+    public Product getIfPresent(String id) {
+        if (!enabled) return null;
+        Optional<Product> cached = local.getIfPresent(id);
+        return cached == null ? null : cached.orElse(null);
+    }
+
+    // Must be called after every write that changes or removes the product (or creates it).
+    public void evict(String id) {
+        if (!enabled) return;
+        local.invalidate(id);
+        if (tier != null) tier.evict(id);
+    }
+
+    private Optional<Product> loadThroughTier(String id, Function<String, Optional<Product>> loader) {
+        if (tier != null) {
+            ProductCacheTier.Entry shared = tier.get(id);
+            if (shared != null) return Optional.ofNullable(shared.product());
+        }
+        Optional<Product> loaded = loader.apply(id);
+        if (tier != null) tier.put(id, new ProductCacheTier.Entry(loaded.orElse(null)), loaded.isPresent() ? ttl : negativeTtl);
+        return loaded;
+    }
+}
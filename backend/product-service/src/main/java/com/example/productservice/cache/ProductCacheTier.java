@@ -0,0 +1,25 @@
+package com.example.productservice.cache;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import com.example.productservice.model.Product;
+
+// Optional second tier shared by all product-service replicas (e.g. Redis, Hazelcast). Besides
+// holding entries it carries invalidations: an evict on one replica must reach the in-process
+// cache of every other replica through the subscribed listeners. Declare a bean implementing
+// this interface to plug one in; InMemoryProductCacheTier is an embedded stand-in.
+public interface ProductCacheTier {
+    // A cached lookup result; a null product records that the id does not exist.
+    record Entry(Product product) {}
+
+    // Returns null when the tier holds nothing for the id.
+    Entry get(String id);
+
+    void put(String id, Entry entry, Duration ttl);
+
+    // Removes the entry and notifies every subscriber, including ones in other processes.
+    void evict(String id);
+
+    void subscribe(Consumer<String> invalidations);
+}
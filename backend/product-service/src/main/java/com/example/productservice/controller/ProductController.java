@@ -1,42 +1,385 @@
 package com.example.productservice.controller;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.productservice.cache.ProductCache;
+import com.example.productservice.importer.ProductImporter;
+import com.example.productservice.importer.RowSource;
 import com.example.productservice.model.Product;
+import com.example.productservice.model.ProductBatchRequest;
+import com.example.productservice.model.ProductPage;
+import com.example.productservice.repository.ProductCursor;
 import com.example.productservice.repository.ProductRepository;
+import com.example.productservice.repository.ProductSearch;
+import com.example.productservice.repository.ProductSort;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+// Servlet (MVC) API; a pod started with the "reactive" profile serves ProductReadController instead.
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/products")
 public class ProductController {
+    // Fields a client may project in listings and batch lookups; _id is always returned.
+    static final Set<String> LISTABLE_FIELDS = Set.of("name", "description", "price", "quantity", "userId", "imageIds");
+    // List views don't need description/imageIds, which dominate document size.
+    static final List<String> DEFAULT_LIST_FIELDS = List.of("name", "price", "quantity", "userId");
+    // Fields a seller may change with PATCH; imageIds are owned by addImage.
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("name", "description", "price", "quantity");
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int MAX_BATCH_PRODUCTS = 1000;
+    private static final int DASHBOARD_LOW_STOCK_ITEMS = 20;
+
     private final ProductRepository repo;
+    private final ProductCache cache;
+    private final ObjectMapper mapper;
+    private final ProductImporter importer;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxImagesPerProduct;
+    private final int maxBatchIds;
+    private final int maxSearchResults;
+    private final int lowStockThreshold;
+    private final int dashboardMaxProducts;
+    private final List<Double> priceBuckets;
+    private final CacheControl itemCaching;
+    private final CacheControl listCaching;
+    private final Duration exportSettle;
+    private final String internalToken;
 
-    public ProductController(ProductRepository repo) {
+    public ProductController(ProductRepository repo, ProductCache cache, ObjectMapper mapper, ProductImporter importer,
+                             @Value("${products.page.default-size:20}") int defaultPageSize,
+                             @Value("${products.page.max-size:100}") int maxPageSize,
+                             @Value("${products.images.max-per-product:0}") int maxImagesPerProduct,
+                             @Value("${products.batch.max-ids:100}") int maxBatchIds,
+                             @Value("${products.http.max-age:60s}") Duration itemMaxAge,
+                             @Value("${products.http.list-max-age:10s}") Duration listMaxAge,
+                             @Value("${products.search.max-results:1000}") int maxSearchResults,
+                             @Value("${products.search.price-buckets:0,10,25,50,100,250,500,1000}") List<Double> priceBuckets,
+                             @Value("${products.dashboard.low-stock-threshold:5}") int lowStockThreshold,
+                             @Value("${products.dashboard.max-products:200}") int dashboardMaxProducts,
+                             @Value("${products.export.settle:5s}") Duration exportSettle,
+                             @Value("${INTERNAL_TOKEN:}") String internalToken) {
         this.repo = repo;
+        this.cache = cache;
+        this.mapper = mapper;
+        this.internalToken = internalToken;
+        this.importer = importer;
+        this.maxImagesPerProduct = maxImagesPerProduct;
+        this.maxBatchIds = Math.max(1, maxBatchIds);
+        this.maxSearchResults = Math.max(1, maxSearchResults);
+        this.priceBuckets = List.copyOf(priceBuckets);
+        this.lowStockThreshold = lowStockThreshold;
+        this.dashboardMaxProducts = Math.max(1, dashboardMaxProducts);
+        this.exportSettle = exportSettle;
+        // public catalogue data: shared caches may keep it briefly, then revalidate with the ETag
+        this.itemCaching = CacheControl.maxAge(itemMaxAge).cachePublic();
+        this.listCaching = CacheControl.maxAge(listMaxAge).cachePublic();
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.defaultPageSize = Math.min(Math.max(1, defaultPageSize), this.maxPageSize);
     }
 
+    // Cursor-paginated listing. Pass the returned nextCursor back as `cursor` to get the
+    // following page; `fields` is a comma-separated projection (defaults to a summary view).
+    // The ETag is derived from the (id, version) pairs on the page, so If-None-Match skips
+    // serialization when nothing on it changed.
     @GetMapping
-    public List<Product> listAll() {
-        return repo.findAll();
+    public ResponseEntity<?> listAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "sort", required = false) String sort,
+                                     @RequestParam(value = "limit", required = false) Integer limit,
+                                     @RequestParam(value = "fields", required = false) String fields,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ProductSort order;
+        ProductCursor after = null;
+        try {
+            order = ProductSort.parse(sort);
+            if (cursor != null && !cursor.isBlank()) {
+                after = ProductCursor.decode(cursor);
+                if (after.getSort() != order) throw new IllegalArgumentException("Invalid cursor");
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        List<String> projection;
+        try {
+            projection = parseFields(fields, DEFAULT_LIST_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        int size = limit == null ? defaultPageSize : Math.min(Math.max(1, limit), maxPageSize);
+
+        // fetch one extra row to learn whether another page exists
+        List<Product> rows = repo.findPage(order, after, size + 1, projection);
+        String next = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            next = ProductCursor.after(rows.get(size - 1), order).encode();
+        }
+        String tag = pageETag(rows, next, projection);
+        if (etagMatches(ifNoneMatch, tag)) {
+            return ResponseEntity.status(304).eTag(tag).cacheControl(listCaching).build();
+        }
+        return ResponseEntity.ok().eTag(tag).cacheControl(listCaching).body(new ProductPage(rows, next));
+    }
+
+    // Search over name and description through the text index, best matches first (or by id
+    // when only filters are given), with optional inclusive price range and seller filters.
+    // Paged by page/size up to products.search.max-results hits; deeper pages should refine the
+    // query instead. facets=true adds per-seller and per-price-bucket counts for the whole match.
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam(value = "q", required = false) String q,
+                                    @RequestParam(value = "minPrice", required = false) Double minPrice,
+                                    @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+                                    @RequestParam(value = "sellerId", required = false) String sellerId,
+                                    @RequestParam(value = "page", defaultValue = "0") int page,
+                                    @RequestParam(value = "size", required = false) Integer size,
+                                    @RequestParam(value = "fields", required = false) String fields,
+                                    @RequestParam(value = "facets", defaultValue = "false") boolean facets) {
+        ProductSearch criteria;
+        List<String> projection;
+        try {
+            criteria = new ProductSearch(q, minPrice, maxPrice, sellerId);
+            projection = parseFields(fields, DEFAULT_LIST_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        int pageSize = size == null ? defaultPageSize : Math.min(Math.max(1, size), maxPageSize);
+        if (page < 0) return ResponseEntity.badRequest().body(Map.of("error", "page must be >= 0"));
+        if ((long) (page + 1) * pageSize > maxSearchResults) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Only the first " + maxSearchResults + " results can be paged; refine the search"));
+        }
+
+        // fetch one extra row to learn whether another page exists
+        List<Product> rows = repo.search(criteria, projection, page * pageSize, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) rows = rows.subList(0, pageSize);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", rows);
+        result.put("page", page);
+        result.put("size", pageSize);
+        result.put("hasMore", hasMore);
+        if (facets) result.put("facets", repo.facets(criteria, priceBuckets, 10));
+        return ResponseEntity.ok().cacheControl(listCaching).body(result);
     }
 
+    // Everything the seller dashboard shows, from one aggregation over the caller's products:
+    // totals (product count, stock value = sum of price * quantity, image count), products
+    // under the low-stock threshold, and the most recently updated products with imageCount.
+    @GetMapping("/dashboard")
+    public ResponseEntity<?> dashboard(@RequestParam(value = "lowStock", required = false) Integer lowStock) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only sellers have a dashboard"));
+        }
+        int threshold = lowStock == null ? lowStockThreshold : Math.max(0, lowStock);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            .body(repo.sellerDashboard(auth.getName(), threshold, DASHBOARD_LOW_STOCK_ITEMS, dashboardMaxProducts));
+    }
+
+    // Multi-get: resolves many ids with one $in query instead of one GET per product.
+    // `items` follows the order of the requested ids and holds null for ids that were not
+    // found; those ids are also listed in `missing`. Without `fields` full documents are returned.
+    @GetMapping("/batch")
+    public ResponseEntity<?> getMany(@RequestParam("ids") List<String> ids,
+                                     @RequestParam(value = "fields", required = false) String fields) {
+        return batch(ids, fields);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> getMany(@RequestBody ProductBatchRequest body) {
+        return batch(body.getIds(), body.getFields() == null ? null : String.join(",", body.getFields()));
+    }
+
+    private ResponseEntity<?> batch(List<String> ids, String fields) {
+        if (ids == null || ids.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error", "ids required"));
+        if (ids.size() > maxBatchIds) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Too many ids (max " + maxBatchIds + ")"));
+        }
+        List<String> projection;
+        try {
+            projection = parseFields(fields, List.of());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Map<String, Product> byId = new HashMap<>();
+        for (Product p : repo.findByIds(new LinkedHashSet<>(ids), projection)) byId.put(p.getId(), p);
+        List<Product> items = new ArrayList<>(ids.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Product p = byId.get(id);
+            items.add(p);
+            if (p == null) missing.add(id);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", items);
+        result.put("missing", missing);
+        return ResponseEntity.ok(result);
+    }
+
+    // Internal endpoint streaming the catalogue as newline-delimited JSON, one product per line,
+    // straight from a Mongo cursor so memory stays flat regardless of collection size.
+    // Lines are ordered by (updatedAt, id): a consumer passes the last line's updatedAt and id as
+    // `modifiedSince` and `afterId` on its next run to export only what changed since. updatedAt
+    // is stamped by the writing replica before its write lands, so products stamped within the
+    // last products.export.settle are left for the next run rather than risk skipping a write
+    // that commits late with an earlier stamp. With `modifiedSince` alone, products stamped
+    // exactly then are sent again; consumers upsert by id anyway.
+    @GetMapping("/export")
+    public ResponseEntity<?> export(@RequestParam(value = "userId", required = false) String userId,
+                                    @RequestParam(value = "modifiedSince", required = false) String modifiedSince,
+                                    @RequestParam(value = "afterId", required = false) String afterId,
+                                    @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                                    @RequestHeader(value = "X-Internal-Token", required = false) String token) {
+        if (!isInternalCall(token)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        Instant since = null;
+        if (modifiedSince != null && !modifiedSince.isBlank()) {
+            try {
+                since = Instant.parse(modifiedSince);
+            } catch (DateTimeParseException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "modifiedSince must be an ISO-8601 instant"));
+            }
+        }
+        final Instant watermark = since;
+        final String resumeId = since != null && afterId != null && !afterId.isBlank() ? afterId : null;
+        final Instant until = Instant.now().minus(exportSettle);
+        ObjectWriter writer = mapper.writerFor(Product.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            // closing the wrapper finishes the gzip trailer and frees its Deflater; the container
+            // owns the response stream itself, so that is only flushed
+            OutputStream response = StreamUtils.nonClosing(out);
+            try (OutputStream target = gzip ? new GZIPOutputStream(response, 8192) : new BufferedOutputStream(response, 8192);
+                 Stream<Product> products = repo.streamForExport(userId, watermark, resumeId, until);
+                 JsonGenerator gen = mapper.getFactory().createGenerator(target)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                var it = products.iterator();
+                while (it.hasNext()) {
+                    writer.writeValue(gen, it.next());
+                    gen.writeRaw('\n');
+                }
+            }
+        };
+        var response = ResponseEntity.ok().contentType(NDJSON);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(body);
+    }
+
+    // Bulk import for the signed-in seller from a streamed CSV (text/csv, header line required) or
+    // NDJSON (application/x-ndjson) body; see ProductImporter. Responds with a JSON report
+    // {rows, inserted, failed, truncated, errors: [{line, error}]}. With Accept: application/x-ndjson
+    // the report is streamed instead: one line per bulk write with the totals so far and that
+    // batch's errors, so a client can show progress; the last line has "done": true.
+    @PostMapping(value = "/import", consumes = { "text/csv", "application/x-ndjson" })
+    public ResponseEntity<?> importProducts(InputStream body,
+                                            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only sellers can import products"));
+        }
+        String sellerId = auth.getName();
+        RowSource source;
+        try {
+            source = MediaType.parseMediaType(contentType).isCompatibleWith(NDJSON)
+                ? RowSource.ndjson(body, mapper)
+                : RowSource.csv(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (accept == null || MediaType.parseMediaTypes(accept).stream().noneMatch(NDJSON::equalsTypeAndSubtype)) {
+            try (source) {
+                return ResponseEntity.ok(importer.run(source, sellerId, null));
+            }
+        }
+        StreamingResponseBody stream = out -> {
+            try (source; JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                ProductImporter.Report report = importer.run(source, sellerId,
+                    (totals, errors) -> writeImportLine(gen, totals, errors, false));
+                writeImportLine(gen, report, List.of(), true);
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(stream);
+    }
+
+    private void writeImportLine(JsonGenerator gen, ProductImporter.Report totals,
+                                 List<ProductImporter.RowError> errors, boolean done) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("rows", totals.getRows());
+        line.put("inserted", totals.getInserted());
+        line.put("failed", totals.getFailed());
+        line.put("errors", errors);
+        if (done) {
+            line.put("truncated", totals.isTruncated());
+            line.put("done", true);
+        }
+        mapper.writeValue(gen, line);
+        gen.writeRaw('\n');
+        gen.flush();
+    }
+
+    // The ETag is the product's version. Revalidation (If-None-Match) is answered from the cached
+    // copy or a version-only read, so an unchanged product is never loaded or serialized.
     @GetMapping("/{id}")
-    public ResponseEntity<?> getOne(@PathVariable String id) {
-        return repo.findById(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> getOne(@PathVariable String id,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Product cached = cache.getIfPresent(id);
+            Long current = cached != null ? cached.getVersion() : repo.findVersion(id);
+            if (current != null && etagMatches(ifNoneMatch, etag(current))) {
+                return ResponseEntity.status(304).eTag(etag(current)).cacheControl(itemCaching).build();
+            }
+        }
+        return cache.get(id, repo::findById)
+            .<ResponseEntity<?>>map(p -> ResponseEntity.ok().eTag(etag(p.getVersion())).cacheControl(itemCaching).body(p))
+            .orElse(ResponseEntity.notFound().build());
     }
 
     // create product - only seller
@@ -48,12 +391,16 @@ public class ProductController {
         }
         String userId = auth.getName();
         p.setUserId(userId);
-        Product saved = repo.save(p);
-        return ResponseEntity.ok(saved);
+        // ids and versions are assigned by the server
+        p.setId(null);
+        p.setVersion(null);
+        return ResponseEntity.ok(repo.save(p));
     }
 
+    // Full replace of the seller-editable fields; imageIds in the body are ignored.
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Product p) {
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Product p,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
             return ResponseEntity.status(403).body(Map.of("error", "Only sellers can update products"));
@@ -63,13 +410,56 @@ public class ProductController {
         if (opt.isEmpty()) return ResponseEntity.notFound().build();
         Product existing = opt.get();
         if (!userId.equals(existing.getUserId())) return ResponseEntity.status(403).body(Map.of("error", "Cannot modify another seller's product"));
+        if (ifMatch != null && !ifMatchAccepts(ifMatch, existing.getVersion())) {
+            return ResponseEntity.status(412).eTag(etag(existing.getVersion())).body(Map.of("error", "Product has changed"));
+        }
         existing.setName(p.getName());
         existing.setDescription(p.getDescription());
         existing.setPrice(p.getPrice());
         existing.setQuantity(p.getQuantity());
-        existing.setImageIds(p.getImageIds());
-        repo.save(existing);
-        return ResponseEntity.ok(existing);
+        // imageIds are left alone, as with PATCH: they are only changed through the image endpoints
+        try {
+            repo.save(existing);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body(Map.of("error", "Product was modified concurrently, retry"));
+        }
+        cache.evict(id);
+        return ResponseEntity.ok().eTag(etag(existing.getVersion())).body(existing);
+    }
+
+    // Partial update: only the fields present in the body are written, as a single $set, so
+    // concurrent image attachments are never overwritten. With If-Match the write only applies
+    // if the product is still at that version (412 otherwise); the response carries the new ETag.
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> patch(@PathVariable String id, @RequestBody Map<String, Object> changes,
+                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getAuthorities().stream().noneMatch(a -> a.getAuthority().equalsIgnoreCase("ROLE_SELLER"))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only sellers can update products"));
+        }
+        Map<String, Object> update;
+        try {
+            update = validatePatch(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Long expected = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expected = parseETag(ifMatch);
+            if (expected == null) return ResponseEntity.status(412).body(Map.of("error", "Product has changed"));
+        }
+        String userId = auth.getName();
+        Product updated = repo.patch(id, userId, expected, update);
+        if (updated == null) {
+            // nothing matched; find out why (only on this failure path)
+            var opt = repo.findById(id);
+            if (opt.isEmpty()) return ResponseEntity.notFound().build();
+            Product current = opt.get();
+            if (!userId.equals(current.getUserId())) return ResponseEntity.status(403).body(Map.of("error", "Cannot modify another seller's product"));
+            return ResponseEntity.status(412).eTag(etag(current.getVersion())).body(Map.of("error", "Product has changed"));
+        }
+        cache.evict(id);
+        return ResponseEntity.ok().eTag(etag(updated.getVersion())).body(updated);
     }
 
     @DeleteMapping("/{id}")
@@ -84,29 +474,148 @@ public class ProductController {
         Product existing = opt.get();
         if (!userId.equals(existing.getUserId())) return ResponseEntity.status(403).body(Map.of("error", "Cannot delete another seller's product"));
         repo.deleteById(id);
+        cache.evict(id);
         return ResponseEntity.noContent().build();
     }
 
     // Internal endpoint to append an image/media id to a product's imageIds list.
     // This endpoint expects an internal token in the X-Internal-Token header and is
     // intended for trusted services (e.g., media-service) to keep data in sync.
+    // The append is a single atomic update, so concurrent uploads never lose ids.
     @PostMapping("/{id}/images")
     public ResponseEntity<?> addImage(@PathVariable String id, @RequestBody Map<String, String> body,
                                       @RequestHeader(value = "X-Internal-Token", required = false) String token) {
-        String internalToken = System.getenv("INTERNAL_TOKEN");
-        if (internalToken == null || !internalToken.equals(token)) {
+        if (!isInternalCall(token)) {
             return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
         }
-        var opt = repo.findById(id);
-        if (opt.isEmpty()) return ResponseEntity.notFound().build();
-        Product product = opt.get();
         String mediaId = body.get("mediaId");
         if (mediaId == null || mediaId.isBlank()) return ResponseEntity.badRequest().body(Map.of("error", "mediaId required"));
-        List<String> imgs = product.getImageIds();
-        if (imgs == null) imgs = new ArrayList<>();
-        imgs.add(mediaId);
-        product.setImageIds(imgs);
-        repo.save(product);
-        return ResponseEntity.ok(product);
-    }
-}
\ No newline at end of file
+        if (!repo.attachImage(id, mediaId, maxImagesPerProduct)) return ResponseEntity.notFound().build();
+        cache.evict(id);
+        return ResponseEntity.ok(Map.of("productId", id, "mediaId", mediaId));
+    }
+
+    // Internal counterpart of addImage: media-service calls it when a media document is deleted.
+    @DeleteMapping("/{id}/images/{mediaId}")
+    public ResponseEntity<?> removeImage(@PathVariable String id, @PathVariable String mediaId,
+                                         @RequestHeader(value = "X-Internal-Token", required = false) String token) {
+        if (!isInternalCall(token)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        if (!repo.detachImage(id, mediaId)) return ResponseEntity.notFound().build();
+        cache.evict(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Internal bulk variant for imports: {"productId": ["mediaId", ...], ...} in one bulk write.
+    @PostMapping("/images/batch")
+    public ResponseEntity<?> addImages(@RequestBody Map<String, List<String>> body,
+                                       @RequestHeader(value = "X-Internal-Token", required = false) String token) {
+        if (!isInternalCall(token)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Forbidden"));
+        }
+        if (body.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error", "No products given"));
+        if (body.size() > MAX_BATCH_PRODUCTS) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Too many products (max " + MAX_BATCH_PRODUCTS + ")"));
+        }
+        for (List<String> ids : body.values()) {
+            if (ids == null || ids.isEmpty() || ids.stream().anyMatch(m -> m == null || m.isBlank())) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Each product needs a non-empty list of mediaIds"));
+            }
+        }
+        int found = repo.attachImages(body, maxImagesPerProduct);
+        body.keySet().forEach(cache::evict);
+        return ResponseEntity.ok(Map.of("products", body.size(), "found", found, "missing", body.size() - found));
+    }
+
+    static String etag(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    // If-None-Match uses weak comparison: W/"3" matches "3".
+    static boolean etagMatches(String header, String etag) {
+        if (header == null) return false;
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // If-Match uses strong comparison; a weak tag never matches.
+    private static boolean ifMatchAccepts(String header, Long version) {
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || c.equals(etag(version))) return true;
+        }
+        return false;
+    }
+
+    // The version in a single strong ETag ("7"), or null if the header is anything else.
+    private static Long parseETag(String header) {
+        String h = header.trim();
+        if (h.length() < 3 || h.charAt(0) != '"' || h.charAt(h.length() - 1) != '"') return null;
+        try {
+            return Long.parseLong(h.substring(1, h.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> validatePatch(Map<String, Object> changes) {
+        if (changes == null || changes.isEmpty()) throw new IllegalArgumentException("No fields to update");
+        Map<String, Object> update = new LinkedHashMap<>();
+        for (var e : changes.entrySet()) {
+            String field = e.getKey();
+            Object value = e.getValue();
+            if (!PATCHABLE_FIELDS.contains(field)) throw new IllegalArgumentException("Field cannot be patched: " + field);
+            switch (field) {
+                case "price" -> {
+                    if (value != null && !(value instanceof Number)) throw new IllegalArgumentException("price must be a number");
+                    value = value == null ? null : ((Number) value).doubleValue();
+                }
+                case "quantity" -> {
+                    if (value != null && !(value instanceof Integer)) throw new IllegalArgumentException("quantity must be an integer");
+                }
+                default -> {
+                    if (value != null && !(value instanceof String)) throw new IllegalArgumentException(field + " must be a string");
+                }
+            }
+            update.put(field, value);
+        }
+        return update;
+    }
+
+    private static String pageETag(List<Product> rows, String next, List<String> projection) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(String.join(",", projection).getBytes(StandardCharsets.UTF_8));
+            for (Product p : rows) sha.update((p.getId() + ':' + p.getVersion() + ';').getBytes(StandardCharsets.UTF_8));
+            if (next != null) sha.update(next.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(sha.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Parses a comma-separated projection, rejecting unknown fields; blank means `defaults`.
+    static List<String> parseFields(String fields, List<String> defaults) {
+        if (fields == null || fields.isBlank()) return defaults;
+        Set<String> requested = new LinkedHashSet<>();
+        for (String f : fields.split(",")) {
+            String name = f.trim();
+            if (name.isEmpty() || name.equals("id")) continue;
+            if (!LISTABLE_FIELDS.contains(name)) throw new IllegalArgumentException("Unknown field: " + name);
+            requested.add(name);
+        }
+        return List.copyOf(requested);
+    }
+
+    // The shared secret comes from the INTERNAL_TOKEN environment variable (or any other property
+    // source); with none configured, every internal call is refused.
+    private boolean isInternalCall(String token) {
+        return !internalToken.isEmpty() && internalToken.equals(token);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.productservice.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.productservice.model.Product;
+import com.example.productservice.model.ProductPage;
+import com.example.productservice.repository.ProductCursor;
+import com.example.productservice.repository.ProductSort;
+import com.example.productservice.repository.ReactiveProductRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking catalogue reads for pods started with the "reactive" profile (WebFlux on Netty,
+// reactive Mongo driver). No request thread is held during the Mongo round trip, so one pod can
+// keep far more concurrent readers in flight. Listing and get-by-id keep the MVC contract;
+// writes are not served here and stay on the regular pods.
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/products")
+public class ProductReadController {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ReactiveProductRepository repo;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ProductReadController(ReactiveProductRepository repo,
+                                 @Value("${products.page.default-size:20}") int defaultPageSize,
+                                 @Value("${products.page.max-size:100}") int maxPageSize) {
+        this.repo = repo;
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.defaultPageSize = Math.min(Math.max(1, defaultPageSize), this.maxPageSize);
+    }
+
+    // Same cursor pagination as ProductController.listAll.
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> listAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                           @RequestParam(value = "sort", required = false) String sort,
+                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                           @RequestParam(value = "fields", required = false) String fields) {
+        ProductSort order;
+        ProductCursor after;
+        List<String> projection;
+        try {
+            order = ProductSort.parse(sort);
+            after = decodeCursor(cursor, order);
+            projection = ProductController.parseFields(fields, ProductController.DEFAULT_LIST_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", e.getMessage())));
+        }
+        int size = limit == null ? defaultPageSize : Math.min(Math.max(1, limit), maxPageSize);
+
+        // fetch one extra row to learn whether another page exists
+        return repo.findPage(order, after, size + 1, projection).collectList().map(rows -> {
+            String next = null;
+            if (rows.size() > size) {
+                rows = rows.subList(0, size);
+                next = ProductCursor.after(rows.get(size - 1), order).encode();
+            }
+            return ResponseEntity.ok(new ProductPage(rows, next));
+        });
+    }
+
+    // Streams the listing as NDJSON (Accept: application/x-ndjson) instead of one page. Products
+    // are pulled from the Mongo cursor only as fast as the client reads them, so a slow consumer
+    // applies backpressure instead of buffering the catalogue. `cursor` resumes after a product.
+    @GetMapping(produces = NDJSON)
+    public Flux<Product> stream(@RequestParam(value = "cursor", required = false) String cursor,
+                                @RequestParam(value = "sort", required = false) String sort,
+                                @RequestParam(value = "fields", required = false) String fields) {
+        ProductSort order = ProductSort.parse(sort);
+        ProductCursor after = decodeCursor(cursor, order);
+        List<String> projection = ProductController.parseFields(fields, ProductController.DEFAULT_LIST_FIELDS);
+        return repo.findPage(order, after, 0, projection);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Product>> getOne(@PathVariable String id) {
+        return repo.findById(id).map(ResponseEntity::ok).defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    private static ProductCursor decodeCursor(String cursor, ProductSort order) {
+        if (cursor == null || cursor.isBlank()) return null;
+        ProductCursor after = ProductCursor.decode(cursor);
+        if (after.getSort() != order) throw new IllegalArgumentException("Invalid cursor");
+        return after;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.productservice.importer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.productservice.model.Product;
+import com.example.productservice.repository.ProductRepository;
+
+// Bulk catalogue import: rows are validated as they are read and the valid ones are written in
+// unordered bulk inserts of products.import.batch-size, so a 100k-row file costs ~100 round
+// trips instead of 100k single saves. Invalid rows and rejected inserts are reported by line
+// number and never stop the rest of the file.
+@Component
+public class ProductImporter {
+    private static final Logger log = LoggerFactory.getLogger(ProductImporter.class);
+    private static final int MAX_NAME_LENGTH = 200;
+    private static final int MAX_DESCRIPTION_LENGTH = 5000;
+
+    public record RowError(long line, String error) {}
+
+    // Running totals; `errors` keeps the first products.import.max-errors problems.
+    public static class Report {
+        private long rows;
+        private long inserted;
+        private long failed;
+        private boolean truncated;
+        private final List<RowError> errors = new ArrayList<>();
+
+        public long getRows() { return rows; }
+        public long getInserted() { return inserted; }
+        public long getFailed() { return failed; }
+        // true when the file had more rows than products.import.max-rows; the rest was not read
+        public boolean isTruncated() { return truncated; }
+        public List<RowError> getErrors() { return errors; }
+    }
+
+    // Called after every bulk write with the totals so far and the errors found since the last call.
+    public interface Progress {
+        void batch(Report totals, List<RowError> newErrors) throws IOException;
+    }
+
+    private final ProductRepository repo;
+    private final int batchSize;
+    private final long maxRows;
+    private final int maxErrors;
+
+    public ProductImporter(ProductRepository repo,
+                           @Value("${products.import.batch-size:1000}") int batchSize,
+                           @Value("${products.import.max-rows:200000}") long maxRows,
+                           @Value("${products.import.max-errors:1000}") int maxErrors) {
+        this.repo = repo;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRows = Math.max(1, maxRows);
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    public Report run(RowSource source, String sellerId, Progress progress) throws IOException {
+        Report report = new Report();
+        List<Product> batch = new ArrayList<>(batchSize);
+        List<Long> lines = new ArrayList<>(batchSize);
+        List<RowError> newErrors = new ArrayList<>();
+        long started = System.nanoTime();
+        while (true) {
+            RowSource.Row row;
+            try {
+                row = source.next();
+            } catch (IllegalArgumentException e) {
+                // the rest of the file cannot be split into rows reliably
+                fail(report, newErrors, new RowError(source.line, e.getMessage()));
+                break;
+            }
+            if (row == null) break;
+            if (report.rows == maxRows) {
+                report.truncated = true;
+                break;
+            }
+            report.rows++;
+            String error = row.error();
+            Product p = null;
+            if (error == null) {
+                try {
+                    p = toProduct(row.values(), sellerId);
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+            }
+            if (p == null) {
+                fail(report, newErrors, new RowError(row.line(), error));
+                continue;
+            }
+            batch.add(p);
+            lines.add(row.line());
+            if (batch.size() == batchSize) {
+                flush(batch, lines, report, newErrors, progress);
+            }
+        }
+        flush(batch, lines, report, newErrors, progress);
+        log.info("Imported {} of {} product rows for seller {} in {} ms ({} failed)", report.inserted, report.rows,
+            sellerId, (System.nanoTime() - started) / 1_000_000, report.failed);
+        return report;
+    }
+
+    private void flush(List<Product> batch, List<Long> lines, Report report, List<RowError> newErrors,
+                       Progress progress) throws IOException {
+        Map<Integer, String> rejected = repo.insertAll(batch);
+        report.inserted += batch.size() - rejected.size();
+        rejected.forEach((index, message) -> fail(report, newErrors, new RowError(lines.get(index), message)));
+        batch.clear();
+        lines.clear();
+        if (progress != null) progress.batch(report, List.copyOf(newErrors));
+        newErrors.clear();
+    }
+
+    private void fail(Report report, List<RowError> newErrors, RowError error) {
+        report.failed++;
+        if (report.errors.size() < maxErrors) {
+            report.errors.add(error);
+            newErrors.add(error);
+        }
+    }
+
+    // Same fields a seller can set through the API; ids, images and versions are server-owned.
+    static Product toProduct(Map<String, Object> values, String sellerId) {
+        for (String key : values.keySet()) {
+            if (!RowSource.COLUMNS.contains(key)) throw new IllegalArgumentException("Unknown field: " + key);
+        }
+        String name = text(values.get("name"), "name", MAX_NAME_LENGTH);
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name is required");
+        Double price = number(values.get("price"), "price");
+        if (price != null && (price < 0 || price.isInfinite() || price.isNaN())) {
+            throw new IllegalArgumentException("price must be a non-negative number");
+        }
+        Double quantity = number(values.get("quantity"), "quantity");
+        if (quantity != null && (quantity < 0 || quantity != Math.rint(quantity) || quantity > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("quantity must be a non-negative integer");
+        }
+        Product p = new Product();
+        p.setName(name.trim());
+        p.setDescription(text(values.get("description"), "description", MAX_DESCRIPTION_LENGTH));
+        p.setPrice(price);
+        p.setQuantity(quantity == null ? null : quantity.intValue());
+        p.setUserId(sellerId);
+        p.setVersion(0L);
+        return p;
+    }
+
+    private static String text(Object value, String field, int maxLength) {
+        if (value == null) return null;
+        if (!(value instanceof String s)) throw new IllegalArgumentException(field + " must be a string");
+        if (s.length() > maxLength) throw new IllegalArgumentException(field + " is longer than " + maxLength + " characters");
+        return s;
+    }
+
+    // CSV cells arrive as strings, NDJSON values as JSON numbers; accept both.
+    private static Double number(Object value, String field) {
+        if (value == null) return null;
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof String s) {
+            try {
+                return Double.valueOf(s.trim());
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new IllegalArgumentException(field + " must be a number");
+    }
+}
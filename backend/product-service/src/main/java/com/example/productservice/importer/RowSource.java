@@ -0,0 +1,152 @@
+package com.example.productservice.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Reads an import file one row at a time, so a large upload is never held in memory.
+// CSV needs a header line naming the columns (any order, case-insensitive); quoted fields may
+// contain commas, doubled quotes and line breaks. NDJSON is one JSON object per line.
+public abstract class RowSource implements Closeable {
+    public static final Set<String> COLUMNS = Set.of("name", "description", "price", "quantity");
+
+    // One input record; `values` is null when the record itself could not be parsed.
+    public record Row(long line, Map<String, Object> values, String error) {}
+
+    protected final BufferedReader in;
+    protected long line;
+
+    protected RowSource(InputStream in) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    // Next non-blank row, or null at the end of the input.
+    public abstract Row next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    public static RowSource csv(InputStream in) throws IOException {
+        return new Csv(in);
+    }
+
+    public static RowSource ndjson(InputStream in, ObjectMapper mapper) {
+        return new Ndjson(in, mapper);
+    }
+
+    private static final class Csv extends RowSource {
+        private final List<String> header;
+
+        Csv(InputStream in) throws IOException {
+            super(in);
+            List<String> names = record();
+            if (names == null) throw new IllegalArgumentException("CSV header line required");
+            header = new ArrayList<>();
+            for (String n : names) {
+                String column = n.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+                if (!COLUMNS.contains(column)) throw new IllegalArgumentException("Unknown column: " + n.trim());
+                if (header.contains(column)) throw new IllegalArgumentException("Duplicate column: " + column);
+                header.add(column);
+            }
+            if (!header.contains("name")) throw new IllegalArgumentException("CSV needs a name column");
+        }
+
+        @Override
+        public Row next() throws IOException {
+            while (true) {
+                long start = line + 1;
+                List<String> fields = record();
+                if (fields == null) return null;
+                if (fields.size() == 1 && fields.get(0).isBlank()) continue;
+                if (fields.size() != header.size()) {
+                    return new Row(start, null, "Expected " + header.size() + " fields, found " + fields.size());
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                for (int i = 0; i < fields.size(); i++) {
+                    // an empty cell means "not given"
+                    if (!fields.get(i).isEmpty()) values.put(header.get(i), fields.get(i));
+                }
+                return new Row(start, values, null);
+            }
+        }
+
+        // RFC 4180 record; null at end of input.
+        private List<String> record() throws IOException {
+            int c = in.read();
+            if (c == -1) return null;
+            line++;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) throw new IllegalArgumentException("Unterminated quoted field starting before line " + line);
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') line++;
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static final class Ndjson extends RowSource {
+        private static final TypeReference<Map<String, Object>> OBJECT = new TypeReference<>() {};
+        private final ObjectMapper mapper;
+
+        Ndjson(InputStream in, ObjectMapper mapper) {
+            super(in);
+            this.mapper = mapper;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            while ((text = in.readLine()) != null) {
+                line++;
+                if (text.isBlank()) continue;
+                try {
+                    return new Row(line, mapper.readValue(text, OBJECT), null);
+                } catch (JsonProcessingException e) {
+                    return new Row(line, null, "Not a JSON object");
+                }
+            }
+            return null;
+        }
+    }
+}
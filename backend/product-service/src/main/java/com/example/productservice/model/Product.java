@@ -1,20 +1,47 @@
 package com.example.productservice.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
+import java.time.Instant;
 import java.util.List;
 
 @Document(collection = "products")
+// Keyset pagination indexes: (sortKey, _id) lets each listing page be a bounded index scan.
+@CompoundIndexes({
+    @CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}"),
+    @CompoundIndex(name = "name_id", def = "{'name': 1, '_id': 1}"),
+    // incremental exports: "modified since" watermark, optionally per seller
+    @CompoundIndex(name = "updatedAt_id", def = "{'updatedAt': 1, '_id': 1}"),
+    @CompoundIndex(name = "userId_updatedAt_id", def = "{'userId': 1, 'updatedAt': 1, '_id': 1}")
+})
+// Projected listings leave unselected fields null; don't serialize them.
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Product {
     @Id
     private String id;
+    // search: one text index over both, a name hit weighs ten times a description hit
+    @TextIndexed(weight = 10)
     private String name;
+    @TextIndexed
     private String description;
     private Double price;
     private Integer quantity;
     private String userId; // seller id
     private List<String> imageIds; // references to Media documents
+    @LastModifiedDate
+    private Instant updatedAt; // set on every save, used as the export watermark
+    @Version
+    private Long version; // bumped by every write, served as the ETag
+    @TextScore
+    private Float score; // relevance, only populated by text searches
 
     public Product() {}
 
@@ -33,4 +60,10 @@ public class Product {
     public void setUserId(String userId) { this.userId = userId; }
     public List<String> getImageIds() { return imageIds; }
     public void setImageIds(List<String> imageIds) { this.imageIds = imageIds; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    public Float getScore() { return score; }
+    public void setScore(Float score) { this.score = score; }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.productservice.model;
+
+import java.util.List;
+
+// Body of POST /api/products/batch.
+public class ProductBatchRequest {
+    private List<String> ids;
+    private List<String> fields; // optional projection
+
+    public ProductBatchRequest() {}
+
+    public List<String> getIds() { return ids; }
+    public void setIds(List<String> ids) { this.ids = ids; }
+    public List<String> getFields() { return fields; }
+    public void setFields(List<String> fields) { this.fields = fields; }
+}
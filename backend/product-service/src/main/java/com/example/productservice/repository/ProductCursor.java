@@ -0,0 +1,89 @@
+package com.example.productservice.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import com.example.productservice.model.Product;
+
+// Opaque continuation token for keyset pagination. It records the sort key and _id of
+// the last product of a page; the next page starts strictly after that pair, so a page
+// costs one index range scan no matter how deep the client has paged.
+public class ProductCursor {
+    private static final String SEP = "\n";
+
+    private final ProductSort sort;
+    private final Object lastValue; // Double, String or null depending on sort
+    private final String lastId;
+
+    public ProductCursor(ProductSort sort, Object lastValue, String lastId) {
+        this.sort = sort;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    public static ProductCursor after(Product last, ProductSort sort) {
+        Object value = switch (sort) {
+            case PRICE -> last.getPrice();
+            case NAME -> last.getName();
+            case ID -> null;
+        };
+        return new ProductCursor(sort, value, last.getId());
+    }
+
+    public ProductSort getSort() { return sort; }
+    public Object getLastValue() { return lastValue; }
+    public String getLastId() { return lastId; }
+
+    public String encode() {
+        String type;
+        String value;
+        if (lastValue == null) {
+            type = "n";
+            value = "";
+        } else if (lastValue instanceof Double d) {
+            type = "d";
+            value = Double.toString(d);
+        } else {
+            type = "s";
+            value = lastValue.toString();
+        }
+        String raw = sort.name() + SEP + lastId + SEP + type + SEP + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEP, 4);
+            if (parts.length != 4 || parts[1].isEmpty()) throw new IllegalArgumentException("Invalid cursor");
+            ProductSort sort = ProductSort.valueOf(parts[0]);
+            Object value = switch (parts[2]) {
+                case "n" -> null;
+                case "d" -> Double.valueOf(parts[3]);
+                case "s" -> parts[3];
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            };
+            return new ProductCursor(sort, value, parts[1]);
+        } catch (IllegalArgumentException e) {
+            // covers bad base64, unknown sort names and malformed numbers
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    // Criteria selecting every product that sorts strictly after this cursor.
+    public Criteria toCriteria() {
+        if (sort == ProductSort.ID) return Criteria.where("id").gt(lastId);
+        String field = sort.getField();
+        if (lastValue == null) {
+            // nulls sort first: remaining nulls with a greater _id, then every non-null value
+            return new Criteria().orOperator(
+                Criteria.where(field).is(null).and("id").gt(lastId),
+                Criteria.where(field).ne(null));
+        }
+        return new Criteria().orOperator(
+            Criteria.where(field).gt(lastValue),
+            Criteria.where(field).is(lastValue).and("id").gt(lastId));
+    }
+}
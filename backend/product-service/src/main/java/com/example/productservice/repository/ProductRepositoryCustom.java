@@ -0,0 +1,63 @@
+package com.example.productservice.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+
+import com.example.productservice.model.Product;
+
+public interface ProductRepositoryCustom {
+    // Returns at most `limit` products ordered by `sort`, starting after `after` (null for
+    // the first page). Only `fields` (plus _id) are loaded from Mongo.
+    List<Product> findPage(ProductSort sort, ProductCursor after, int limit, Collection<String> fields);
+
+    // Loads the given ids with a single $in query. Empty `fields` loads whole documents.
+    List<Product> findByIds(Collection<String> ids, Collection<String> fields);
+
+    // Relevance-ordered (or _id-ordered without text) search page; `fields` as in findPage.
+    List<Product> search(ProductSearch search, Collection<String> fields, int skip, int limit);
+
+    // Counts per seller (top `topSellers`) and per price bucket for everything matching `search`,
+    // in one aggregation. Bucket i covers [boundaries[i], boundaries[i+1]); others go to "other".
+    Map<String, Object> facets(ProductSearch search, List<Double> priceBoundaries, int topSellers);
+
+    // One aggregation over a seller's products (served by the userId_updatedAt_id index):
+    // totals {products, stockValue = sum(price * quantity), images}, the lowest-stock products
+    // below `lowStockThreshold`, and the `productLimit` most recently updated products with
+    // their imageCount.
+    Map<String, Object> sellerDashboard(String userId, int lowStockThreshold, int lowStockLimit, int productLimit);
+
+    // Reads only the version of a product (null if it does not exist), for cheap revalidation.
+    Long findVersion(String id);
+
+    // Streams products from a server-side cursor ordered by (updatedAt, _id), starting after the
+    // resume key (modifiedSince, afterId) and stopping at `until` inclusive. userId, modifiedSince
+    // and afterId are optional; without afterId products stamped exactly modifiedSince are
+    // included again. Without modifiedSince, products that have no updatedAt are included too.
+    // The caller must close the stream to release the cursor.
+    Stream<Product> streamForExport(String userId, Instant modifiedSince, String afterId, Instant until);
+
+    // Applies `changes` as one $set (plus a version bump) if the product exists, belongs to
+    // userId and, when expectedVersion is non-null, is still at that version. Returns the
+    // updated product, or null when no document matched.
+    Product patch(String id, String userId, Long expectedVersion, Map<String, Object> changes);
+
+    // Atomically appends mediaId to the product's imageIds unless already present, keeping at
+    // most `cap` newest ids when cap > 0. Returns false if the product does not exist.
+    boolean attachImage(String productId, String mediaId, int cap);
+
+    // Atomically removes mediaId from the product's imageIds (a no-op if it is not there).
+    // Returns false if the product does not exist.
+    boolean detachImage(String productId, String mediaId);
+
+    // Attaches many media ids to many products in a single bulk write. Returns how many of the
+    // products exist.
+    int attachImages(Map<String, List<String>> mediaIdsByProduct, int cap);
+
+    // Inserts all products with one unordered bulk write: a failing document does not stop the
+    // others. Returns the error message per failed index into `products` (empty if all went in).
+    Map<Integer, String> insertAll(List<Product> products);
+}
@@ -0,0 +1,243 @@
+package com.example.productservice.repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+
+import org.bson.Document;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import com.example.productservice.model.Product;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    // documents pulled from the server per getMore while exporting
+    private static final int EXPORT_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongo;
+
+    public ProductRepositoryImpl(MongoTemplate mongo) {
+        this.mongo = mongo;
+    }
+
+    @Override
+    public List<Product> findPage(ProductSort sort, ProductCursor after, int limit, Collection<String> fields) {
+        return mongo.find(pageQuery(sort, after, limit, fields), Product.class);
+    }
+
+    // Shared with the reactive read path so both serve identical pages.
+    static Query pageQuery(ProductSort sort, ProductCursor after, int limit, Collection<String> fields) {
+        Query query = new Query();
+        if (after != null) query.addCriteria(after.toCriteria());
+        query.with(sort.toSort());
+        if (limit > 0) query.limit(limit);
+        for (String f : fields) query.fields().include(f);
+        // the sort key must be loaded so the next cursor can be built from the last row
+        if (sort != ProductSort.ID) query.fields().include(sort.getField());
+        // versions feed the listing ETag and let clients make conditional writes
+        if (!fields.isEmpty()) query.fields().include("version");
+        return query;
+    }
+
+    @Override
+    public List<Product> findByIds(Collection<String> ids, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("id").in(ids));
+        for (String f : fields) query.fields().include(f);
+        return mongo.find(query, Product.class);
+    }
+
+    @Override
+    public List<Product> search(ProductSearch search, Collection<String> fields, int skip, int limit) {
+        Query query;
+        if (search.hasText()) {
+            query = TextQuery.queryText(search.toTextCriteria()).sortByScore();
+        } else {
+            query = new Query().with(Sort.by("id"));
+        }
+        search.toFilters().forEach(query::addCriteria);
+        for (String f : fields) query.fields().include(f);
+        if (!fields.isEmpty()) query.fields().include("version");
+        query.skip(skip).limit(limit);
+        return mongo.find(query, Product.class);
+    }
+
+    @Override
+    public Map<String, Object> facets(ProductSearch search, List<Double> priceBoundaries, int topSellers) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (search.hasText()) stages.add(Aggregation.match(search.toTextCriteria()));
+        for (Criteria c : search.toFilters()) stages.add(Aggregation.match(c));
+        FacetOperation facet = Aggregation.facet(
+                Aggregation.sortByCount("userId"),
+                Aggregation.limit(topSellers))
+            .as("sellers")
+            .and(Aggregation.bucket("price").withBoundaries(priceBoundaries.toArray())
+                .withDefaultBucket("other").andOutputCount().as("count"))
+            .as("price");
+        stages.add(facet);
+        Document result = mongo.aggregate(Aggregation.newAggregation(stages), Product.class, Document.class)
+            .getUniqueMappedResult();
+        return result == null ? Map.of("sellers", List.of(), "price", List.of()) : result;
+    }
+
+    @Override
+    public Map<String, Object> sellerDashboard(String userId, int lowStockThreshold, int lowStockLimit, int productLimit) {
+        // missing price/quantity/imageIds count as zero / empty
+        AggregationExpression price = ConditionalOperators.ifNull("price").then(0);
+        AggregationExpression quantity = ConditionalOperators.ifNull("quantity").then(0);
+        AggregationExpression imageCount = ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("imageIds").then(List.of()));
+        FacetOperation facet = Aggregation.facet(
+                Aggregation.group()
+                    .count().as("products")
+                    .sum(ArithmeticOperators.Multiply.valueOf(price).multiplyBy(quantity)).as("stockValue")
+                    .sum(imageCount).as("images"),
+                Aggregation.project("products", "stockValue", "images").andExclude("_id"))
+            .as("totals")
+            .and(
+                Aggregation.match(Criteria.where("quantity").lt(lowStockThreshold)),
+                Aggregation.sort(Sort.by("quantity", "id")),
+                Aggregation.limit(lowStockLimit),
+                Aggregation.project("name", "quantity"))
+            .as("lowStock")
+            .and(
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "updatedAt", "id")),
+                Aggregation.limit(productLimit),
+                Aggregation.project("name", "description", "price", "quantity", "version").and(imageCount).as("imageCount"))
+            .as("products");
+        Aggregation pipeline = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("userId").is(userId)), facet);
+        Document result = mongo.aggregate(pipeline, Product.class, Document.class).getUniqueMappedResult();
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        List<?> totals = result == null ? List.of() : result.getList("totals", Object.class, List.of());
+        dashboard.put("totals", totals.isEmpty() ? Map.of("products", 0, "stockValue", 0, "images", 0) : totals.get(0));
+        dashboard.put("lowStock", result == null ? List.of() : withStringIds(result.getList("lowStock", Document.class)));
+        dashboard.put("products", result == null ? List.of() : withStringIds(result.getList("products", Document.class)));
+        return dashboard;
+    }
+
+    // Raw aggregation output carries ObjectId _id; expose it as "id" like the mapped Product.
+    private static List<Document> withStringIds(List<Document> docs) {
+        List<Document> out = new ArrayList<>(docs.size());
+        for (Document d : docs) {
+            Document copy = new Document("id", String.valueOf(d.get("_id")));
+            d.forEach((k, v) -> { if (!k.equals("_id")) copy.put(k, v); });
+            out.add(copy);
+        }
+        return out;
+    }
+
+    @Override
+    public Long findVersion(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        query.fields().include("version");
+        Product p = mongo.findOne(query, Product.class);
+        return p == null ? null : p.getVersion();
+    }
+
+    @Override
+    public Stream<Product> streamForExport(String userId, Instant modifiedSince, String afterId, Instant until) {
+        Query query = new Query();
+        if (userId != null) query.addCriteria(Criteria.where("userId").is(userId));
+        Criteria updated = Criteria.where("updatedAt").lte(until);
+        if (modifiedSince == null) {
+            // $lte never matches a missing field: products saved before updatedAt existed only
+            // show up in full exports, which must include them
+            updated = new Criteria().orOperator(updated, Criteria.where("updatedAt").exists(false));
+        } else if (afterId != null) {
+            // keyset on (updatedAt, _id): later timestamps, or the same one with a greater id
+            query.addCriteria(new Criteria().orOperator(
+                Criteria.where("updatedAt").gt(modifiedSince),
+                Criteria.where("updatedAt").is(modifiedSince).and("id").gt(afterId)));
+        } else if (modifiedSince != null) {
+            updated.gte(modifiedSince);
+        }
+        query.addCriteria(updated);
+        query.with(Sort.by(Sort.Direction.ASC, "updatedAt", "id"));
+        query.cursorBatchSize(EXPORT_BATCH_SIZE);
+        return mongo.stream(query, Product.class);
+    }
+
+    @Override
+    public Product patch(String id, String userId, Long expectedVersion, Map<String, Object> changes) {
+        Criteria match = Criteria.where("id").is(id).and("userId").is(userId);
+        if (expectedVersion != null) match.and("version").is(expectedVersion);
+        Update update = new Update().set("updatedAt", Instant.now()).inc("version", 1);
+        changes.forEach(update::set);
+        return mongo.findAndModify(Query.query(match), update, FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public boolean attachImage(String productId, String mediaId, int cap) {
+        // the $ne guard gives $addToSet semantics while still allowing $push's $slice cap
+        Query query = Query.query(Criteria.where("id").is(productId).and("imageIds").ne(mediaId));
+        Update update = new Update().set("updatedAt", Instant.now()).inc("version", 1);
+        if (cap > 0) update.push("imageIds").slice(-cap).each(mediaId);
+        else update.push("imageIds", mediaId);
+        UpdateResult result = mongo.updateFirst(query, update, Product.class);
+        if (result.getMatchedCount() > 0) return true;
+        // nothing matched: either the product is missing or the id was already attached
+        return mongo.exists(Query.query(Criteria.where("id").is(productId)), Product.class);
+    }
+
+    @Override
+    public boolean detachImage(String productId, String mediaId) {
+        // only bump the version when the id was actually there
+        Query query = Query.query(Criteria.where("id").is(productId).and("imageIds").is(mediaId));
+        UpdateResult result = mongo.updateFirst(query,
+            new Update().pull("imageIds", mediaId).set("updatedAt", Instant.now()).inc("version", 1), Product.class);
+        if (result.getMatchedCount() > 0) return true;
+        return mongo.exists(Query.query(Criteria.where("id").is(productId)), Product.class);
+    }
+
+    @Override
+    public int attachImages(Map<String, List<String>> mediaIdsByProduct, int cap) {
+        // with a cap the trim must run after the add for the same product, so keep order
+        BulkOperations ops = mongo.bulkOps(cap > 0 ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED, Product.class);
+        Instant now = Instant.now();
+        mediaIdsByProduct.forEach((productId, mediaIds) -> {
+            Query byId = Query.query(Criteria.where("id").is(productId));
+            ops.updateOne(byId, new Update().addToSet("imageIds").each(mediaIds.toArray()).set("updatedAt", now).inc("version", 1));
+            if (cap > 0) ops.updateOne(byId, new Update().push("imageIds").slice(-cap).each());
+        });
+        BulkWriteResult result = ops.execute();
+        if (cap <= 0) return result.getMatchedCount();
+        // the add and the trim each match a product, and a delete can land between them, so
+        // the combined match count says nothing exact; ask for the ids instead
+        return (int) mongo.count(Query.query(Criteria.where("id").in(mediaIdsByProduct.keySet())), Product.class);
+    }
+
+    @Override
+    public Map<Integer, String> insertAll(List<Product> products) {
+        if (products.isEmpty()) return Map.of();
+        try {
+            mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class).insert(products).execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> failed = new LinkedHashMap<>();
+            for (BulkWriteError error : e.getErrors()) failed.put(error.getIndex(), error.getMessage());
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.productservice.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+
+// Search filters; every part is optional. `text` goes through the products text index
+// (name weighted above description); price bounds are inclusive.
+public class ProductSearch {
+    private final String text;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final String sellerId;
+
+    public ProductSearch(String text, Double minPrice, Double maxPrice, String sellerId) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not exceed maxPrice");
+        }
+        this.text = text == null || text.isBlank() ? null : text.trim();
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sellerId = sellerId == null || sellerId.isBlank() ? null : sellerId;
+    }
+
+    public String getText() { return text; }
+    public boolean hasText() { return text != null; }
+
+    TextCriteria toTextCriteria() {
+        return TextCriteria.forDefaultLanguage().matching(text);
+    }
+
+    // The non-text filters, empty when none is set.
+    List<Criteria> toFilters() {
+        List<Criteria> filters = new ArrayList<>();
+        if (sellerId != null) filters.add(Criteria.where("userId").is(sellerId));
+        if (minPrice != null || maxPrice != null) {
+            Criteria price = Criteria.where("price");
+            if (minPrice != null) price.gte(minPrice);
+            if (maxPrice != null) price.lte(maxPrice);
+            filters.add(price);
+        }
+        return filters;
+    }
+}
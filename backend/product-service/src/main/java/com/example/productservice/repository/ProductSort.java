@@ -0,0 +1,32 @@
+package com.example.productservice.repository;
+
+import org.springframework.data.domain.Sort;
+
+// Keyset orderings supported by the product listing. Every ordering ends with _id
+// so that the (sortKey, _id) pair is unique and can be used as a continuation point.
+public enum ProductSort {
+    ID("id"),
+    PRICE("price"),
+    NAME("name");
+
+    private final String field;
+
+    ProductSort(String field) {
+        this.field = field;
+    }
+
+    public String getField() { return field; }
+
+    public Sort toSort() {
+        if (this == ID) return Sort.by(Sort.Direction.ASC, "id");
+        return Sort.by(Sort.Direction.ASC, field).and(Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    public static ProductSort parse(String value) {
+        if (value == null || value.isBlank()) return ID;
+        for (ProductSort s : values()) {
+            if (s.field.equalsIgnoreCase(value.trim())) return s;
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + value);
+    }
+}
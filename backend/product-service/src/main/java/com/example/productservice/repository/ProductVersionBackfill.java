@@ -0,0 +1,37 @@
+package com.example.productservice.repository;
+
+import java.util.Date;
+
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.productservice.model.Product;
+
+// Products written before the version field existed have none; Spring Data would treat them as
+// new on save and try to insert a duplicate. Give them version 0 once: the run is recorded in the
+// "migrations" collection, so later startups skip the scan of products. Replicas starting together
+// may both run it; the update is idempotent.
+@Component
+public class ProductVersionBackfill implements ApplicationRunner {
+    static final String MIGRATIONS = "migrations";
+    static final String ID = "product-version-backfill";
+
+    private final MongoTemplate mongo;
+
+    public ProductVersionBackfill(MongoTemplate mongo) {
+        this.mongo = mongo;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mongo.exists(Query.query(Criteria.where("_id").is(ID)), MIGRATIONS)) return;
+        mongo.updateMulti(Query.query(Criteria.where("version").exists(false)), Update.update("version", 0L), Product.class);
+        mongo.save(new Document("_id", ID).append("doneAt", new Date()), MIGRATIONS);
+    }
+}
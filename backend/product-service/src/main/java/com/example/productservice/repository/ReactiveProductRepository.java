@@ -0,0 +1,9 @@
+package com.example.productservice.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import com.example.productservice.model.Product;
+
+// Non-blocking twin of ProductRepository, only active with the "reactive" profile.
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, String>, ReactiveProductRepositoryCustom {
+}
@@ -0,0 +1,13 @@
+package com.example.productservice.repository;
+
+import java.util.Collection;
+
+import com.example.productservice.model.Product;
+
+import reactor.core.publisher.Flux;
+
+public interface ReactiveProductRepositoryCustom {
+    // Same contract as ProductRepositoryCustom.findPage; limit <= 0 means no limit, in which case
+    // the result is pulled from the server cursor only as fast as the subscriber requests it.
+    Flux<Product> findPage(ProductSort sort, ProductCursor after, int limit, Collection<String> fields);
+}
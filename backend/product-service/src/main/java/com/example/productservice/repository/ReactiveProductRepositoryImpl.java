@@ -0,0 +1,22 @@
+package com.example.productservice.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import com.example.productservice.model.Product;
+
+import reactor.core.publisher.Flux;
+
+public class ReactiveProductRepositoryImpl implements ReactiveProductRepositoryCustom {
+    private final ReactiveMongoTemplate mongo;
+
+    public ReactiveProductRepositoryImpl(ReactiveMongoTemplate mongo) {
+        this.mongo = mongo;
+    }
+
+    @Override
+    public Flux<Product> findPage(ProductSort sort, ProductCursor after, int limit, Collection<String> fields) {
+        return mongo.find(ProductRepositoryImpl.pageQuery(sort, after, limit, fields), Product.class);
+    }
+}
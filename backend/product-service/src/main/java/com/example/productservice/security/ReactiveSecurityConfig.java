@@ -0,0 +1,38 @@
+package com.example.productservice.security;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+
+import com.example.common.web.CorsConfig;
+
+// The reactive profile only serves public catalogue reads, so no JWT is needed: reads are open,
+// everything else is refused and must go to the regular (servlet) pods.
+@Configuration
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain readOnlyFilterChain(ServerHttpSecurity http) {
+        UrlBasedCorsConfigurationSource cors = new UrlBasedCorsConfigurationSource();
+        cors.registerCorsConfiguration("/**", CorsConfig.policy());
+        return http
+            .csrf(ServerHttpSecurity.CsrfSpec::disable)
+            .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+            .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+            .cors(c -> c.configurationSource(cors))
+            // nobody authenticates here, so answer refused calls with 403 rather than a 401 challenge
+            .exceptionHandling(e -> e.authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN)))
+            .authorizeExchange(ex -> ex
+                .pathMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                .pathMatchers(HttpMethod.GET, "/api/products", "/api/products/*", "/actuator/health/**").permitAll()
+                .anyExchange().denyAll())
+            .build();
+    }
+}
@@ -39,6 +39,8 @@ class ProductServiceApplicationTests {
         // Test that security configuration is properly set up
         assertNotNull(context.getBean(org.springframework.security.config.annotation.web.configuration.WebSecurityConfiguration.class),
                      "Web security configuration should be available");
+        assertTrue(context.containsBean("corsConfigurationSource"),
+                  "Shared CORS configuration from buy-common should be registered");
     }
 
     @Test
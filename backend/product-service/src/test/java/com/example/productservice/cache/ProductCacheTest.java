@@ -0,0 +1,83 @@
+package com.example.productservice.cache;
+
+import com.example.productservice.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCacheTest {
+
+    private static ProductCache cache(ProductCacheTier tier) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (tier != null) beans.addBean("tier", tier);
+        return new ProductCache(true, 100, Duration.ofMinutes(5), Duration.ofMinutes(1),
+            beans.getBeanProvider(ProductCacheTier.class), new SimpleMeterRegistry());
+    }
+
+    private static Product product(String id, String name) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        return p;
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndCacheMisses() {
+        ProductCache cache = cache(null);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Optional<Product>> db = id -> {
+            loads.incrementAndGet();
+            return id.equals("p1") ? Optional.of(product("p1", "One")) : Optional.empty();
+        };
+
+        assertEquals("One", cache.get("p1", db).orElseThrow().getName());
+        assertEquals("One", cache.get("p1", db).orElseThrow().getName());
+        assertTrue(cache.get("missing", db).isEmpty());
+        assertTrue(cache.get("missing", db).isEmpty());
+
+        assertEquals(2, loads.get(), "hits and cached 404s must not reach the loader");
+    }
+
+    @Test
+    void evict_ShouldForceReload() {
+        ProductCache cache = cache(null);
+        String[] name = { "Before" };
+        Function<String, Optional<Product>> db = id -> Optional.of(product(id, name[0]));
+
+        cache.get("p1", db);
+        name[0] = "After";
+        assertEquals("Before", cache.get("p1", db).orElseThrow().getName());
+        cache.evict("p1");
+        assertEquals("After", cache.get("p1", db).orElseThrow().getName());
+    }
+
+    @Test
+    void sharedTier_ShouldServeOtherReplicasAndPropagateEvictions() {
+        InMemoryProductCacheTier shared = new InMemoryProductCacheTier();
+        ProductCache replicaA = cache(shared);
+        ProductCache replicaB = cache(shared);
+        AtomicInteger loads = new AtomicInteger();
+        String[] name = { "Before" };
+        Function<String, Optional<Product>> db = id -> {
+            loads.incrementAndGet();
+            return Optional.of(product(id, name[0]));
+        };
+
+        replicaA.get("p1", db);
+        assertEquals("Before", replicaB.get("p1", db).orElseThrow().getName());
+        assertEquals(1, loads.get(), "replica B should be served from the shared tier");
+
+        name[0] = "After";
+        replicaA.evict("p1");
+
+        assertEquals("After", replicaB.get("p1", db).orElseThrow().getName(), "B's local copy must be invalidated");
+        assertEquals(2, loads.get());
+    }
+}
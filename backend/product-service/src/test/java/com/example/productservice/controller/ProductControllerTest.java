@@ -1,28 +1,50 @@
 package com.example.productservice.controller;
 
+import com.example.productservice.importer.ProductImporter;
 import com.example.productservice.model.Product;
+import com.example.productservice.model.ProductBatchRequest;
+import com.example.productservice.model.ProductPage;
 import com.example.productservice.repository.ProductRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @SpringBootTest
 @TestPropertySource(properties = {
-    "INTERNAL_TOKEN=test-internal-token-for-microservices",
-    "spring.data.mongodb.uri=mongodb://localhost:27017/test-products"
+    "INTERNAL_TOKEN=" + ProductControllerTest.INTERNAL_TOKEN,
+    "spring.data.mongodb.uri=mongodb://localhost:27017/test-products",
+    "products.import.batch-size=2",
+    "products.export.settle=0s"
 })
 class ProductControllerTest {
+    static final String INTERNAL_TOKEN = "test-internal-token-for-microservices";
 
     @Autowired
     private ProductController productController;
@@ -30,6 +52,9 @@ class ProductControllerTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @BeforeEach
     void cleanup() {
         productRepository.deleteAll();
@@ -49,12 +74,73 @@ class ProductControllerTest {
         productRepository.save(p2);
 
         // When
-        List<Product> products = productController.listAll();
+        ResponseEntity<?> response = productController.listAll(null, null, null, null, null);
 
         // Then
+        assertEquals(200, response.getStatusCodeValue());
+        ProductPage page = (ProductPage) response.getBody();
+        List<Product> products = page.getItems();
         assertEquals(2, products.size());
         assertTrue(products.stream().anyMatch(p -> p.getName().equals("Product 1")));
         assertTrue(products.stream().anyMatch(p -> p.getName().equals("Product 2")));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void listAll_WithCursor_ShouldWalkAllPagesInPriceOrder() {
+        // Given - five products, two sharing a price
+        double[] prices = {30.0, 10.0, 20.0, 10.0, 40.0};
+        for (int i = 0; i < prices.length; i++) {
+            Product p = new Product();
+            p.setName("Product " + i);
+            p.setPrice(prices[i]);
+            p.setDescription("long description " + i);
+            productRepository.save(p);
+        }
+
+        // When - page through two at a time
+        List<Double> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ResponseEntity<?> response = productController.listAll(cursor, "price", 2, null, null);
+            assertEquals(200, response.getStatusCodeValue());
+            ProductPage page = (ProductPage) response.getBody();
+            page.getItems().forEach(p -> {
+                seen.add(p.getPrice());
+                assertNull(p.getDescription(), "default projection should not load description");
+            });
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Then
+        assertEquals(3, pages);
+        assertEquals(List.of(10.0, 10.0, 20.0, 30.0, 40.0), seen);
+    }
+
+    @Test
+    void listAll_WithFields_ShouldProjectRequestedFields() {
+        Product p = new Product();
+        p.setName("Projected");
+        p.setPrice(5.0);
+        p.setDescription("desc");
+        productRepository.save(p);
+
+        ResponseEntity<?> response = productController.listAll(null, null, null, "name,description", null);
+
+        ProductPage page = (ProductPage) response.getBody();
+        Product found = page.getItems().get(0);
+        assertEquals("Projected", found.getName());
+        assertEquals("desc", found.getDescription());
+        assertNull(found.getPrice());
+    }
+
+    @Test
+    void listAll_InvalidCursorOrField_ShouldReturnBadRequest() {
+        assertEquals(400, productController.listAll("not-a-cursor", null, null, null, null).getStatusCodeValue());
+        assertEquals(400, productController.listAll(null, null, null, "password", null).getStatusCodeValue());
+        assertEquals(400, productController.listAll(null, "rating", null, null, null).getStatusCodeValue());
     }
 
     @Test
@@ -66,7 +152,7 @@ class ProductControllerTest {
         Product saved = productRepository.save(product);
 
         // When
-        ResponseEntity<?> response = productController.getOne(saved.getId());
+        ResponseEntity<?> response = productController.getOne(saved.getId(), null);
 
         // Then
         assertEquals(200, response.getStatusCodeValue());
@@ -79,12 +165,303 @@ class ProductControllerTest {
     @Test
     void getOne_NonExistentProduct_ShouldReturnNotFound() {
         // When
-        ResponseEntity<?> response = productController.getOne("nonexistent-id");
+        ResponseEntity<?> response = productController.getOne("nonexistent-id", null);
 
         // Then
         assertEquals(404, response.getStatusCodeValue());
     }
 
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void getOne_AfterUpdateAndDelete_ShouldNotServeStaleCache() {
+        Product product = new Product();
+        product.setName("Original");
+        product.setUserId("seller1");
+        Product saved = productRepository.save(product);
+        assertEquals("Original", ((Product) productController.getOne(saved.getId(), null).getBody()).getName());
+
+        Product change = new Product();
+        change.setName("Renamed");
+        productController.update(saved.getId(), change, null);
+        assertEquals("Renamed", ((Product) productController.getOne(saved.getId(), null).getBody()).getName());
+
+        productController.delete(saved.getId());
+        assertEquals(404, productController.getOne(saved.getId(), null).getStatusCodeValue());
+    }
+
+    @Test
+    void getOne_IfNoneMatch_ShouldReturnNotModifiedUntilWritten() {
+        String token = INTERNAL_TOKEN;
+        Product product = new Product();
+        product.setName("Versioned");
+        Product saved = productRepository.save(product);
+
+        ResponseEntity<?> first = productController.getOne(saved.getId(), null);
+        String etag = first.getHeaders().getETag();
+        assertEquals("\"0\"", etag);
+        assertTrue(first.getHeaders().getCacheControl().contains("public"));
+
+        ResponseEntity<?> revalidated = productController.getOne(saved.getId(), etag);
+        assertEquals(304, revalidated.getStatusCodeValue());
+        assertNull(revalidated.getBody());
+        assertEquals(304, productController.getOne(saved.getId(), "W/" + etag).getStatusCodeValue());
+
+        // attaching an image is a write: the version and so the ETag move on
+        productController.addImage(saved.getId(), Map.of("mediaId", "m1"), token);
+        ResponseEntity<?> changed = productController.getOne(saved.getId(), etag);
+        assertEquals(200, changed.getStatusCodeValue());
+        assertEquals("\"1\"", changed.getHeaders().getETag());
+    }
+
+    @Test
+    void listAll_IfNoneMatch_ShouldReturnNotModifiedForUnchangedPage() {
+        Product product = new Product();
+        product.setName("Listed");
+        productRepository.save(product);
+
+        String etag = productController.listAll(null, null, null, null, null).getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals(304, productController.listAll(null, null, null, null, etag).getStatusCodeValue());
+
+        Product other = new Product();
+        other.setName("New arrival");
+        productRepository.save(other);
+        assertEquals(200, productController.listAll(null, null, null, null, etag).getStatusCodeValue());
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void update_ShouldKeepImagesAttachedMeanwhile() {
+        Product product = new Product();
+        product.setName("Lamp");
+        product.setUserId("seller1");
+        product.setImageIds(List.of("img-1"));
+        Product saved = productRepository.save(product);
+
+        // a client that loaded the product before img-1 was attached
+        Product change = new Product();
+        change.setName("Desk lamp");
+        change.setImageIds(List.of());
+        assertEquals(200, productController.update(saved.getId(), change, null).getStatusCodeValue());
+
+        Product stored = productRepository.findById(saved.getId()).orElseThrow();
+        assertEquals("Desk lamp", stored.getName());
+        assertEquals(List.of("img-1"), stored.getImageIds());
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void patch_ShouldSetOnlyGivenFieldsAndHonourIfMatch() {
+        Product product = new Product();
+        product.setName("Lamp");
+        product.setPrice(10.0);
+        product.setUserId("seller1");
+        product.setImageIds(List.of("img-1"));
+        Product saved = productRepository.save(product);
+
+        ResponseEntity<?> response = productController.patch(saved.getId(), Map.of("price", 12), "\"0\"");
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("\"1\"", response.getHeaders().getETag());
+        Product stored = productRepository.findById(saved.getId()).orElseThrow();
+        assertEquals(12.0, stored.getPrice());
+        assertEquals("Lamp", stored.getName());
+        assertEquals(List.of("img-1"), stored.getImageIds(), "images must survive a partial update");
+
+        // a second writer still holding version 0 is refused
+        ResponseEntity<?> stale = productController.patch(saved.getId(), Map.of("name", "Desk lamp"), "\"0\"");
+        assertEquals(412, stale.getStatusCodeValue());
+        assertEquals("\"1\"", stale.getHeaders().getETag());
+        assertEquals("Lamp", productRepository.findById(saved.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void patch_InvalidOrForeign_ShouldBeRejected() {
+        Product product = new Product();
+        product.setName("Not mine");
+        product.setUserId("seller2");
+        Product saved = productRepository.save(product);
+
+        assertEquals(400, productController.patch(saved.getId(), Map.of("imageIds", List.of()), null).getStatusCodeValue());
+        assertEquals(400, productController.patch(saved.getId(), Map.of("price", "free"), null).getStatusCodeValue());
+        assertEquals(403, productController.patch(saved.getId(), Map.of("name", "Mine now"), null).getStatusCodeValue());
+        assertEquals(404, productController.patch("000000000000000000000000", Map.of("name", "x"), null).getStatusCodeValue());
+    }
+
+    @Test
+    void search_Filters_ShouldApplyPriceRangeSellerAndPaging() {
+        for (int i = 1; i <= 6; i++) {
+            Product p = new Product();
+            p.setName("Item " + i);
+            p.setPrice(i * 10.0);
+            p.setUserId(i % 2 == 0 ? "seller-even" : "seller-odd");
+            productRepository.save(p);
+        }
+
+        Map<?, ?> first = (Map<?, ?>) productController.search(null, 20.0, 60.0, "seller-even", 0, 2, null, true).getBody();
+        List<?> items = (List<?>) first.get("items");
+        assertEquals(2, items.size());
+        assertEquals(true, first.get("hasMore"));
+        Map<?, ?> facets = (Map<?, ?>) first.get("facets");
+        List<?> sellers = (List<?>) facets.get("sellers");
+        assertEquals(1, sellers.size());
+        assertEquals(3, ((Number) ((Map<?, ?>) sellers.get(0)).get("count")).intValue());
+        assertEquals(3, ((List<?>) facets.get("price")).size(), "20, 40 and 60 fall into three buckets");
+        Map<?, ?> second = (Map<?, ?>) productController.search(null, 20.0, 60.0, "seller-even", 1, 2, null, false).getBody();
+        assertEquals(1, ((List<?>) second.get("items")).size());
+        assertEquals(false, second.get("hasMore"));
+        assertTrue(((List<?>) second.get("items")).stream().allMatch(p -> "seller-even".equals(((Product) p).getUserId())));
+    }
+
+    @Test
+    void search_InvalidRequests_ShouldReturnBadRequest() {
+        assertEquals(400, productController.search(null, 50.0, 10.0, null, 0, null, null, false).getStatusCodeValue());
+        assertEquals(400, productController.search("x", null, null, null, 100, 100, null, false).getStatusCodeValue());
+        assertEquals(400, productController.search("x", null, null, null, -1, null, null, false).getStatusCodeValue());
+        assertEquals(400, productController.search("x", null, null, null, 0, null, "secret", false).getStatusCodeValue());
+    }
+
+    @Test
+    void search_Text_ShouldRankNameMatchesFirst() {
+        Product inDescription = new Product();
+        inDescription.setName("Desk");
+        inDescription.setDescription("goes well with a lamp");
+        productRepository.save(inDescription);
+        Product inName = new Product();
+        inName.setName("Lamp");
+        inName.setDescription("bright");
+        productRepository.save(inName);
+        Product unrelated = new Product();
+        unrelated.setName("Chair");
+        productRepository.save(unrelated);
+
+        ResponseEntity<?> response;
+        try {
+            response = productController.search("lamp", null, null, null, 0, null, null, true);
+        } catch (org.springframework.dao.DataAccessException e) {
+            // the embedded test server may lack $text; real MongoDB supports it
+            assumeTrue(false, "text search not supported by this MongoDB: " + e.getMessage());
+            return;
+        }
+        List<?> items = (List<?>) ((Map<?, ?>) response.getBody()).get("items");
+        assertEquals(List.of("Lamp", "Desk"), items.stream().map(p -> ((Product) p).getName()).toList());
+        assertNotNull(((Map<?, ?>) response.getBody()).get("facets"));
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void dashboard_ShouldAggregateOnlyTheCallersProducts() {
+        Product cheap = new Product();
+        cheap.setName("Cheap");
+        cheap.setPrice(2.0);
+        cheap.setQuantity(3);
+        cheap.setUserId("seller1");
+        cheap.setImageIds(new ArrayList<>(List.of("m1", "m2")));
+        productRepository.save(cheap);
+        Product pricey = new Product();
+        pricey.setName("Pricey");
+        pricey.setPrice(10.0);
+        pricey.setQuantity(50);
+        pricey.setUserId("seller1");
+        productRepository.save(pricey);
+        Product other = new Product();
+        other.setName("Other");
+        other.setPrice(100.0);
+        other.setQuantity(1);
+        other.setUserId("seller2");
+        productRepository.save(other);
+
+        ResponseEntity<?> response = productController.dashboard(null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        Map<?, ?> totals = (Map<?, ?>) body.get("totals");
+        assertEquals(2, ((Number) totals.get("products")).intValue());
+        assertEquals(506.0, ((Number) totals.get("stockValue")).doubleValue(), 0.0001);
+        assertEquals(2, ((Number) totals.get("images")).intValue());
+        List<?> lowStock = (List<?>) body.get("lowStock");
+        assertEquals(1, lowStock.size());
+        assertEquals(cheap.getId(), ((Map<?, ?>) lowStock.get(0)).get("id"));
+        List<?> products = (List<?>) body.get("products");
+        assertEquals(2, products.size());
+        Map<?, ?> cheapRow = products.stream().map(p -> (Map<?, ?>) p)
+            .filter(p -> "Cheap".equals(p.get("name"))).findFirst().orElseThrow();
+        assertEquals(2, ((Number) cheapRow.get("imageCount")).intValue());
+        assertEquals(0, ((List<?>) ((Map<?, ?>) productController.dashboard(0).getBody()).get("lowStock")).size());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void dashboard_AsUser_ShouldReturnForbidden() {
+        assertEquals(403, productController.dashboard(null).getStatusCodeValue());
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void importProducts_Csv_ShouldInsertValidRowsAndReportBadOnes() throws Exception {
+        String csv = "Name,price,quantity,description\n"
+            + "Lamp,12.5,3,\"bright, warm\"\n"
+            + "\"Desk \"\"XL\"\"\",99,1,\"two\nlines\"\n"
+            + ",5,1,no name\n"
+            + "Chair,cheap,2,\n"
+            + "Stool,7,,\n";
+
+        ResponseEntity<?> response = productController.importProducts(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "text/csv", null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        ProductImporter.Report report = (ProductImporter.Report) response.getBody();
+        assertEquals(5, report.getRows());
+        assertEquals(3, report.getInserted());
+        assertEquals(2, report.getFailed());
+        assertEquals(List.of(5L, 6L), report.getErrors().stream().map(ProductImporter.RowError::line).toList());
+        List<Product> saved = productRepository.findAll();
+        assertEquals(3, saved.size());
+        assertTrue(saved.stream().allMatch(p -> "seller1".equals(p.getUserId()) && p.getVersion() == 0L));
+        Product desk = saved.stream().filter(p -> p.getName().equals("Desk \"XL\"")).findFirst().orElseThrow();
+        assertEquals("two\nlines", desk.getDescription());
+        assertNotNull(desk.getUpdatedAt());
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void importProducts_NdjsonStream_ShouldReportProgressPerBatch() throws Exception {
+        String ndjson = "{\"name\":\"A\",\"price\":1}\n"
+            + "{\"name\":\"B\",\"quantity\":1.5}\n"
+            + "\n"
+            + "{\"name\":\"C\",\"userId\":\"someone-else\"}\n"
+            + "not json\n"
+            + "{\"name\":\"D\",\"price\":4}\n"
+            + "{\"name\":\"E\"}\n";
+
+        ResponseEntity<?> response = productController.importProducts(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), "application/x-ndjson", "application/x-ndjson");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length, "two batches of two plus the summary");
+        assertTrue(lines[0].contains("\"line\":2"), lines[0]);
+        assertTrue(lines[2].contains("\"done\":true"), lines[2]);
+        assertTrue(lines[2].contains("\"rows\":6") && lines[2].contains("\"inserted\":3") && lines[2].contains("\"failed\":3"), lines[2]);
+        assertEquals(3, productRepository.count());
+    }
+
+    @Test
+    void importProducts_BadHeaderOrNotSeller_ShouldBeRejected() throws Exception {
+        assertEquals(403, productController.importProducts(
+            new ByteArrayInputStream("name\nA\n".getBytes(StandardCharsets.UTF_8)), "text/csv", null).getStatusCodeValue());
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("seller1", null, "ROLE_SELLER"));
+        try {
+            assertEquals(400, productController.importProducts(
+                new ByteArrayInputStream("name,password\nA,x\n".getBytes(StandardCharsets.UTF_8)), "text/csv", null).getStatusCodeValue());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        assertEquals(0, productRepository.count());
+    }
+
     @Test
     void addImage_WithWrongToken_ShouldReturnForbidden() {
         // Given
@@ -118,6 +495,90 @@ class ProductControllerTest {
         assertEquals(403, response.getStatusCodeValue());
     }
 
+    @Test
+    void addImage_ConcurrentUploads_ShouldKeepEveryImage() throws Exception {
+        String token = INTERNAL_TOKEN;
+        Product product = new Product();
+        product.setName("Product");
+        Product saved = productRepository.save(product);
+        productController.getOne(saved.getId(), null); // prime the cache
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String mediaId = "media-" + i;
+            results.add(pool.submit(() -> productController.addImage(saved.getId(), Map.of("mediaId", mediaId), token)));
+        }
+        for (var r : results) assertEquals(200, r.get().getStatusCodeValue());
+        pool.shutdown();
+        // re-attaching an existing id is a no-op
+        assertEquals(200, productController.addImage(saved.getId(), Map.of("mediaId", "media-0"), token).getStatusCodeValue());
+        // the cached copy must reflect the appended images
+        assertEquals(20, ((Product) productController.getOne(saved.getId(), null).getBody()).getImageIds().size());
+
+        List<String> imageIds = productRepository.findById(saved.getId()).orElseThrow().getImageIds();
+        assertEquals(20, imageIds.size());
+        assertEquals(20, new HashSet<>(imageIds).size());
+    }
+
+    @Test
+    void removeImage_ShouldDetachOnlyThatImage() {
+        String token = INTERNAL_TOKEN;
+        Product product = new Product();
+        product.setName("Product");
+        Product saved = productRepository.save(product);
+        productController.addImage(saved.getId(), Map.of("mediaId", "m1"), token);
+        productController.addImage(saved.getId(), Map.of("mediaId", "m2"), token);
+        productController.getOne(saved.getId(), null); // prime the cache
+
+        assertEquals(204, productController.removeImage(saved.getId(), "m1", token).getStatusCodeValue());
+        // detaching again is a no-op, which keeps redelivery safe
+        assertEquals(204, productController.removeImage(saved.getId(), "m1", token).getStatusCodeValue());
+
+        assertEquals(List.of("m2"), ((Product) productController.getOne(saved.getId(), null).getBody()).getImageIds());
+        assertEquals(404, productController.removeImage("000000000000000000000000", "m2", token).getStatusCodeValue());
+        assertEquals(403, productController.removeImage(saved.getId(), "m2", "wrong").getStatusCodeValue());
+    }
+
+    @Test
+    void addImage_UnknownProduct_ShouldReturnNotFound() {
+        String token = INTERNAL_TOKEN;
+        assertEquals(404, productController.addImage("000000000000000000000000", Map.of("mediaId", "m"), token).getStatusCodeValue());
+    }
+
+    @Test
+    void addImages_Batch_ShouldAttachToManyProducts() {
+        String token = INTERNAL_TOKEN;
+        Product a = productRepository.save(new Product());
+        Product b = productRepository.save(new Product());
+
+        ResponseEntity<?> response = productController.addImages(Map.of(
+            a.getId(), List.of("m1", "m2"),
+            b.getId(), List.of("m3"),
+            "000000000000000000000000", List.of("m4")), token);
+
+        assertEquals(200, response.getStatusCodeValue());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        assertEquals(2, body.get("found"));
+        assertEquals(1, body.get("missing"));
+        assertEquals(List.of("m1", "m2"), productRepository.findById(a.getId()).orElseThrow().getImageIds());
+        assertEquals(List.of("m3"), productRepository.findById(b.getId()).orElseThrow().getImageIds());
+    }
+
+    @Test
+    void attachImages_WithCap_ShouldCountExistingProductsOnce() {
+        Product a = new Product();
+        a.setImageIds(new ArrayList<>(List.of("m0")));
+        a = productRepository.save(a);
+
+        int found = productRepository.attachImages(Map.of(
+            a.getId(), List.of("m1", "m2"),
+            "000000000000000000000000", List.of("m3")), 2);
+
+        assertEquals(1, found);
+        assertEquals(List.of("m1", "m2"), productRepository.findById(a.getId()).orElseThrow().getImageIds());
+    }
+
     @Test
     @WithMockUser(roles = "SELLER", username = "seller1")
     void createProduct_AsSeller_ShouldSucceed() {
@@ -136,6 +597,26 @@ class ProductControllerTest {
         assertEquals("seller1", created.getUserId()); // Vérifie que le userId est bien set
     }
 
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller1")
+    void createProduct_WithExistingId_ShouldCreateANewProduct() {
+        Product existing = new Product();
+        existing.setName("Someone else's");
+        existing.setUserId("seller2");
+        existing = productRepository.save(existing);
+        Product product = new Product();
+        product.setId(existing.getId());
+        product.setName("Copy");
+
+        ResponseEntity<?> response = productController.create(product);
+
+        assertEquals(200, response.getStatusCodeValue());
+        Product created = (Product) response.getBody();
+        assertNotEquals(existing.getId(), created.getId());
+        assertEquals("Someone else's", productRepository.findById(existing.getId()).orElseThrow().getName());
+        assertEquals("seller2", productRepository.findById(existing.getId()).orElseThrow().getUserId());
+    }
+
     @Test
     @WithMockUser(roles = "USER")
     void createProduct_AsUser_ShouldReturnForbidden() {
@@ -149,4 +630,113 @@ class ProductControllerTest {
         // Then
         assertEquals(403, response.getStatusCodeValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getMany_ShouldReturnRequestOrderWithExplicitMisses() {
+        Product a = new Product();
+        a.setName("A");
+        a.setDescription("desc A");
+        a = productRepository.save(a);
+        Product b = new Product();
+        b.setName("B");
+        b = productRepository.save(b);
+        String missingId = "000000000000000000000000";
+
+        ProductBatchRequest request = new ProductBatchRequest();
+        request.setIds(List.of(b.getId(), missingId, a.getId()));
+        request.setFields(List.of("name"));
+        ResponseEntity<?> response = productController.getMany(request);
+
+        assertEquals(200, response.getStatusCodeValue());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        List<?> items = (List<?>) body.get("items");
+        assertEquals(3, items.size());
+        assertEquals("B", ((Product) items.get(0)).getName());
+        assertNull(items.get(1));
+        assertEquals("A", ((Product) items.get(2)).getName());
+        assertNull(((Product) items.get(2)).getDescription(), "projection should drop description");
+        assertEquals(List.of(missingId), body.get("missing"));
+    }
+
+    @Test
+    void getMany_TooManyIds_ShouldReturnBadRequest() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 101; i++) ids.add("id-" + i);
+        assertEquals(400, productController.getMany(ids, null).getStatusCodeValue());
+    }
+
+    @Test
+    void export_WithoutToken_ShouldReturnForbidden() {
+        ResponseEntity<?> response = productController.export(null, null, null, false, null);
+        assertEquals(403, response.getStatusCodeValue());
+    }
+
+    @Test
+    void export_ShouldStreamNdjsonFilteredBySellerAndWatermark() throws Exception {
+        String token = INTERNAL_TOKEN;
+
+        Product old = new Product();
+        old.setName("Old");
+        old.setUserId("seller-a");
+        productRepository.save(old);
+        Instant watermark = productRepository.findById(old.getId()).orElseThrow().getUpdatedAt();
+        Thread.sleep(5);
+        Product fresh = new Product();
+        fresh.setName("Fresh");
+        fresh.setUserId("seller-a");
+        productRepository.save(fresh);
+        Product other = new Product();
+        other.setName("Other");
+        other.setUserId("seller-b");
+        productRepository.save(other);
+
+        // full export for one seller, plain
+        String all = exportBody(productController.export("seller-a", null, null, false, token), false);
+        List<String> lines = all.lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"Old\""));
+        assertTrue(lines.get(1).contains("\"Fresh\""));
+
+        // incremental export resuming after the last line seen, gzipped
+        ResponseEntity<?> response = productController.export("seller-a", watermark.toString(), old.getId(), true, token);
+        assertEquals("gzip", response.getHeaders().getFirst("Content-Encoding"));
+        List<String> changed = exportBody(response, true).lines().toList();
+        assertEquals(1, changed.size());
+        assertTrue(changed.get(0).contains("\"Fresh\""));
+
+        // without the id the watermark itself is inclusive
+        List<String> overlapping = exportBody(productController.export("seller-a", watermark.toString(), null, false, token), false).lines().toList();
+        assertEquals(2, overlapping.size());
+    }
+
+    @Test
+    void export_Full_ShouldIncludeProductsWithoutUpdatedAt() throws Exception {
+        // written before products carried updatedAt
+        mongoTemplate.insert(new Document("name", "Legacy").append("userId", "seller-a").append("version", 0L), "products");
+        Product current = new Product();
+        current.setName("Current");
+        current.setUserId("seller-a");
+        productRepository.save(current);
+
+        List<String> lines = exportBody(productController.export("seller-a", null, null, false, INTERNAL_TOKEN), false).lines().toList();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"Legacy\""));
+        assertTrue(lines.get(1).contains("\"Current\""));
+    }
+
+    @Test
+    void export_InvalidWatermark_ShouldReturnBadRequest() {
+        String token = INTERNAL_TOKEN;
+        assertEquals(400, productController.export(null, "yesterday", null, false, token).getStatusCodeValue());
+    }
+
+    private static String exportBody(ResponseEntity<?> response, boolean gzip) throws Exception {
+        assertEquals(200, response.getStatusCodeValue());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        byte[] bytes = out.toByteArray();
+        if (gzip) bytes = new GZIPInputStream(new ByteArrayInputStream(bytes)).readAllBytes();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
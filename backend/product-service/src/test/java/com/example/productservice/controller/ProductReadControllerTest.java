@@ -0,0 +1,97 @@
+package com.example.productservice.controller;
+
+import com.example.productservice.model.Product;
+import com.example.productservice.model.ProductPage;
+import com.example.productservice.repository.ReactiveProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+@TestPropertySource(properties = "spring.data.mongodb.uri=mongodb://localhost:27017/test-products-reactive")
+class ProductReadControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private ReactiveProductRepository productRepository;
+
+    @BeforeEach
+    void seed() {
+        productRepository.deleteAll()
+            .thenMany(Flux.range(1, 5).map(i -> {
+                Product p = new Product();
+                p.setName("Product " + i);
+                p.setPrice(i * 10.0);
+                p.setDescription("long description " + i);
+                return p;
+            }).concatMap(productRepository::save))
+            .blockLast();
+    }
+
+    @Test
+    void listAll_ShouldPageWithCursor() {
+        ProductPage first = client.get().uri("/api/products?limit=3&sort=price")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(ProductPage.class).returnResult().getResponseBody();
+
+        assertEquals(3, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+        assertNull(first.getItems().get(0).getDescription(), "summary projection by default");
+
+        ProductPage second = client.get().uri("/api/products?limit=3&sort=price&cursor=" + first.getNextCursor())
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(ProductPage.class).returnResult().getResponseBody();
+
+        assertEquals(List.of("Product 4", "Product 5"), second.getItems().stream().map(Product::getName).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void stream_ShouldEmitEveryProductAsNdjson() {
+        List<Product> products = client.get().uri("/api/products?sort=price&fields=name,price")
+            .accept(MediaType.parseMediaType("application/x-ndjson"))
+            .exchange()
+            .expectStatus().isOk()
+            .returnResult(Product.class).getResponseBody()
+            .collectList().block();
+
+        assertEquals(5, products.size());
+        assertEquals("Product 1", products.get(0).getName());
+    }
+
+    @Test
+    void getOne_ShouldReturnProductOr404() {
+        Product any = productRepository.findAll().blockFirst();
+
+        client.get().uri("/api/products/" + any.getId()).exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.name").isEqualTo(any.getName());
+        client.get().uri("/api/products/000000000000000000000000").exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void writesAndBadInput_ShouldBeRejected() {
+        client.post().uri("/api/products").contentType(MediaType.APPLICATION_JSON).bodyValue("{}").exchange()
+            .expectStatus().isForbidden();
+        client.get().uri("/api/products?fields=secret").accept(MediaType.APPLICATION_JSON).exchange()
+            .expectStatus().isBadRequest();
+    }
+}
@@ -3,9 +3,9 @@ package com.example.userservice.controller;
 import com.example.userservice.model.Role;
 import com.example.userservice.model.User;
 import com.example.userservice.repository.UserRepository;
-import com.example.userservice.security.JwtUtil;
+import com.example.userservice.security.PasswordHasher;
+import com.example.common.security.JwtUtil;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -14,10 +14,11 @@ import java.util.Map;
 @RequestMapping("/api/auth")
 public class AuthController {
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHasher passwordHasher;
 
-    public AuthController(UserRepository userRepository) {
+    public AuthController(UserRepository userRepository, PasswordHasher passwordHasher) {
         this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
     }
 
     @PostMapping("/register")
@@ -31,7 +32,12 @@ public class AuthController {
         if (userRepository.findByEmail(email).isPresent()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Email already in use"));
         }
-        String hashed = passwordEncoder.encode(password);
+        String hashed;
+        try {
+            hashed = passwordHasher.encode(password);
+        } catch (PasswordHasher.Overloaded e) {
+            return busy();
+        }
         User u = new User(name, email, hashed, role);
         userRepository.save(u);
         String token = JwtUtil.generateToken(u.getId(), u.getRole().name());
@@ -45,10 +51,24 @@ public class AuthController {
         var opt = userRepository.findByEmail(email);
         if (opt.isEmpty()) return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
         User u = opt.get();
-        if (!passwordEncoder.matches(password, u.getPassword())) {
-            return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
+        try {
+            if (!passwordHasher.matches(password, u.getPassword())) {
+                return ResponseEntity.status(401).body(Map.of("error", "Invalid credentials"));
+            }
+        } catch (PasswordHasher.Overloaded e) {
+            return busy();
+        }
+        // upgrade hashes made with an older cost now that we know the plaintext
+        if (passwordHasher.needsRehash(u.getPassword())) {
+            String current = u.getPassword();
+            passwordHasher.rehashAsync(password, h -> userRepository.replacePasswordHash(u.getId(), current, h));
         }
         String token = JwtUtil.generateToken(u.getId(), u.getRole().name());
         return ResponseEntity.ok(Map.of("token", token, "userId", u.getId()));
     }
-}
\ No newline at end of file
+
+    private static ResponseEntity<?> busy() {
+        return ResponseEntity.status(503).header("Retry-After", "1")
+            .body(Map.of("error", "Authentication is busy, please retry"));
+    }
+}
@@ -2,8 +2,15 @@ package com.example.userservice.repository;
 
 import com.example.userservice.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
+
+    // Swaps the hash only if it is still the one that was verified, so a concurrent change wins.
+    @Query("{ '_id': ?0, 'password': ?1 }")
+    @Update("{ '$set': { 'password': ?2 } }")
+    long replacePasswordHash(String id, String currentHash, String newHash);
 }
\ No newline at end of file
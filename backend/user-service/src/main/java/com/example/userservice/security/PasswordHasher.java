@@ -0,0 +1,144 @@
+package com.example.userservice.security;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Runs BCrypt on a small dedicated pool so a burst of logins cannot occupy every Tomcat worker.
+// The pool and its queue are bounded; when both are full, or a caller has waited longer than
+// auth.hash.max-wait, the work is shed with Overloaded and the caller answers 503.
+// Exposed in actuator as auth.password.hash{op}, auth.password.queue.wait,
+// auth.password.rejected and auth.password.queue.depth.
+@Component
+public class PasswordHasher {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abyx]?\\$(\\d{2})\\$");
+
+    // Thrown when hashing capacity is exhausted; maps to 503 Service Unavailable.
+    public static class Overloaded extends RuntimeException {
+        public Overloaded(String message) { super(message); }
+    }
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final Duration maxWait;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public PasswordHasher(BCryptPasswordEncoder encoder,
+                          @Value("${auth.bcrypt.strength:10}") int strength,
+                          @Value("${auth.hash.threads:0}") int threads,
+                          @Value("${auth.hash.queue-capacity:64}") int queueCapacity,
+                          @Value("${auth.hash.max-wait:2s}") Duration maxWait,
+                          MeterRegistry registry) {
+        this.encoder = encoder;
+        this.strength = strength;
+        this.maxWait = maxWait;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            r -> {
+                Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = Timer.builder("auth.password.hash").tag("op", "encode")
+            .description("Time spent computing BCrypt hashes").register(registry);
+        this.matchesTimer = Timer.builder("auth.password.hash").tag("op", "matches")
+            .description("Time spent computing BCrypt hashes").register(registry);
+        this.queueWait = Timer.builder("auth.password.queue.wait")
+            .description("Time hashing requests wait for a free hashing thread").register(registry);
+        this.rejected = Counter.builder("auth.password.rejected")
+            .description("Hashing requests shed because the pool was saturated").register(registry);
+        Gauge.builder("auth.password.queue.depth", executor, e -> e.getQueue().size())
+            .description("Hashing requests waiting for a thread").register(registry);
+    }
+
+    public String encode(String raw) {
+        return await(submit(() -> encodeTimer.record(() -> encoder.encode(raw))));
+    }
+
+    public boolean matches(String raw, String encoded) {
+        return await(submit(() -> matchesTimer.record(() -> encoder.matches(raw, encoded))));
+    }
+
+    // True when the stored hash was produced with a different cost than the configured one.
+    public boolean needsRehash(String encoded) {
+        if (encoded == null) return false;
+        Matcher m = BCRYPT_COST.matcher(encoded);
+        return m.find() && Integer.parseInt(m.group(1)) != strength;
+    }
+
+    // Best-effort background rehash; silently skipped when the pool is busy (the next login retries).
+    public void rehashAsync(String raw, Consumer<String> onHashed) {
+        try {
+            submit(() -> {
+                onHashed.accept(encodeTimer.record(() -> encoder.encode(raw)));
+                return null;
+            });
+        } catch (Overloaded e) {
+            // not worth failing a successful login over
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new Overloaded("Password hashing queue is full");
+        }
+    }
+
+    private <T> T await(Future<T> f) {
+        try {
+            return f.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // drop it if it has not started yet so abandoned work does not pile up
+            f.cancel(false);
+            rejected.increment();
+            throw new Overloaded("Password hashing timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Overloaded("Interrupted while hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -129,6 +129,28 @@ class AuthControllerTest {
         assertNotNull(body.get("userId"));
     }
 
+    @Test
+    void login_HashWithOldCost_ShouldBeUpgradedTransparently() throws Exception {
+        // Given - a user whose hash was made with a lower cost than the configured one
+        User legacy = new User("Legacy", "legacy@test.com", new BCryptPasswordEncoder(4).encode("legacypass"),
+            com.example.userservice.model.Role.CLIENT);
+        userRepository.save(legacy);
+
+        // When
+        ResponseEntity<?> response = authController.login(Map.of("email", "legacy@test.com", "password", "legacypass"));
+
+        // Then - login succeeds and the stored hash is rewritten in the background
+        assertEquals(200, response.getStatusCodeValue());
+        String upgraded = null;
+        for (int i = 0; i < 50; i++) {
+            upgraded = userRepository.findByEmail("legacy@test.com").orElseThrow().getPassword();
+            if (upgraded.startsWith("$2a$10$")) break;
+            Thread.sleep(100);
+        }
+        assertTrue(upgraded.startsWith("$2a$10$"), "hash should use the configured cost: " + upgraded);
+        assertTrue(passwordEncoder.matches("legacypass", upgraded));
+    }
+
     @Test
     void login_InvalidPassword_ShouldReturnError() {
         // Given - register a user
@@ -0,0 +1,42 @@
+package com.example.userservice.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.common.security.JwtUtil;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The shared chain from buy-common, exercised through a real service.
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.data.mongodb.uri=mongodb://localhost:27017/test-users",
+    "OPERATOR_TOKEN=test-operator-token"
+})
+class ActuatorAccessTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void metrics_ShouldOnlyAnswerTheOperatorToken() throws Exception {
+        mvc.perform(get("/actuator/metrics").header("X-Operator-Token", "test-operator-token"))
+            .andExpect(status().isOk());
+        mvc.perform(get("/actuator/metrics").header("Authorization", "Bearer " + JwtUtil.generateToken("u1", "CLIENT")))
+            .andExpect(status().isForbidden());
+        mvc.perform(get("/actuator/metrics").header("X-Operator-Token", "wrong"))
+            .andExpect(status().isForbidden());
+        mvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void health_ShouldStayPublic() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+}
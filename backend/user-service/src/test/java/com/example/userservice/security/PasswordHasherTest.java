@@ -0,0 +1,74 @@
+package com.example.userservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void shutdown() {
+        if (hasher != null) hasher.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_ShouldRoundTrip() {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 4, 2, 4, Duration.ofSeconds(5), registry);
+
+        String hash = hasher.encode("secret");
+
+        assertTrue(hasher.matches("secret", hash));
+        assertFalse(hasher.matches("other", hash));
+        assertEquals(3, registry.get("auth.password.hash").timers().stream().mapToLong(t -> t.count()).sum());
+    }
+
+    @Test
+    void needsRehash_ShouldCompareStoredCostWithConfiguredCost() {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(5), 5, 1, 1, Duration.ofSeconds(5), registry);
+
+        assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(4).encode("pw")));
+        assertTrue(hasher.needsRehash(new BCryptPasswordEncoder(6).encode("pw")));
+        assertFalse(hasher.needsRehash(hasher.encode("pw")));
+        assertFalse(hasher.needsRehash("not-a-bcrypt-hash"));
+    }
+
+    @Test
+    void saturatedPool_ShouldShedInsteadOfQueueingForever() throws Exception {
+        // one thread, one queue slot: block the thread, fill the slot, the next caller is rejected
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 4, 1, 1, Duration.ofMillis(200), registry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hasher.rehashAsync("a", h -> {
+            running.countDown();
+            try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) { }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        hasher.rehashAsync("b", h -> { });
+
+        assertThrows(PasswordHasher.Overloaded.class, () -> hasher.encode("c"));
+        release.countDown();
+        assertEquals(1.0, registry.get("auth.password.rejected").counter().count());
+    }
+
+    @Test
+    void slowQueue_ShouldTimeOutWithOverloaded() throws Exception {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 4, 1, 4, Duration.ofMillis(100), registry);
+        CountDownLatch release = new CountDownLatch(1);
+        hasher.rehashAsync("a", h -> {
+            try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) { }
+        });
+
+        assertThrows(PasswordHasher.Overloaded.class, () -> hasher.matches("c", "$2a$04$abcdefghijklmnopqrstuu"));
+        release.countDown();
+    }
+}
@@ -59,10 +59,9 @@ export class MediaManagerComponent {
     if (!allowed.includes(this.file.type)) { this.error = 'Unsupported file type'; return; }
     const token = localStorage.getItem('token');
     if (!token) { this.error = 'Login first'; return; }
-    const form = new FormData();
-    form.append('file', this.file);
-  form.append('productId', this.productId);
-    const headers = new HttpHeaders().set('Authorization', 'Bearer ' + token);
-    this.http.post('http://localhost:8083/api/media/upload', form, { headers }).subscribe({ next: () => { alert('Uploaded'); this.uploaded.emit(); }, error: (e) => this.error = 'Upload failed' });
+    // raw body upload: the server streams it straight to disk (no multipart buffering)
+    const headers = new HttpHeaders().set('Authorization', 'Bearer ' + token).set('Content-Type', this.file.type);
+    const params = { productId: this.productId };
+    this.http.post('http://localhost:8083/api/media/upload', this.file, { headers, params }).subscribe({ next: () => { alert('Uploaded'); this.uploaded.emit(); }, error: (e) => this.error = 'Upload failed' });
   }
 }
@@ -13,7 +13,7 @@ import { MediaService } from './services/media.service';
       <div class="col-md-6" *ngFor="let p of filteredProducts">
         <div class="card product-card">
           <div *ngIf="p.images && p.images.length" class="card-img-top text-center" style="padding:8px;">
-            <img [src]="p.images[0].imagePath" alt="" style="max-width:100%;max-height:240px;object-fit:contain" />
+            <img [src]="p.images[0].imagePath + '?w=400'" alt="" style="max-width:100%;max-height:240px;object-fit:contain" />
           </div>
           <div class="card-body">
             <h5 class="card-title">{{p.name}} <span class="badge bg-primary">{{p.price | currency}}</span></h5>
@@ -33,11 +33,12 @@ export class ProductListComponent implements OnInit {
     this.productService.listAll().subscribe(data => {
       this.products = data;
       this.filteredProducts = data;
-      // Fetch media for each product (best-effort)
-      for (const p of this.products) {
-        const pid = p.id || p._id;
-        this.media.byProduct(pid).subscribe(meds => { p.images = meds; }, _ => { p.images = []; });
-      }
+      // Fetch media for all products in one call (best-effort)
+      const ids = this.products.map(p => p.id || p._id);
+      if (!ids.length) return;
+      this.media.byProducts(ids).subscribe(
+        byId => { for (const p of this.products) p.images = byId[p.id || p._id] || []; },
+        _ => { for (const p of this.products) p.images = []; });
     });
   }
 
@@ -33,12 +33,22 @@ import { AuthService } from './services/auth.service';
       </div>
     </div>
 
+    <div class="row mb-3" *ngIf="totals">
+      <div class="col"><div class="card card-body"><div class="text-muted small">Products</div><h5 class="mb-0">{{totals.products}}</h5></div></div>
+      <div class="col"><div class="card card-body"><div class="text-muted small">Stock value</div><h5 class="mb-0">{{totals.stockValue | currency}}</h5></div></div>
+      <div class="col"><div class="card card-body"><div class="text-muted small">Images</div><h5 class="mb-0">{{totals.images}}</h5></div></div>
+    </div>
+    <div class="alert alert-warning" *ngIf="lowStock.length">
+      Low stock:
+      <span *ngFor="let p of lowStock; let last = last">{{p.name}} ({{p.quantity}}){{last ? '' : ', '}}</span>
+    </div>
+
     <h4>Your Products</h4>
     <div class="row">
       <div class="col-md-6" *ngFor="let p of myProducts">
         <div class="card mb-3">
           <div *ngIf="p.images && p.images.length" class="p-2 text-center">
-            <img [src]="p.images[0].imagePath" style="max-width:160px;max-height:120px;object-fit:contain" />
+            <img [src]="p.images[0].imagePath + '?w=200'" style="max-width:160px;max-height:120px;object-fit:contain" />
           </div>
           <div class="card-body">
             <h5>{{p.name}} <small class="text-muted">{{p.price | currency}}</small></h5>
@@ -60,7 +70,8 @@ import { AuthService } from './services/auth.service';
 export class SellerDashboardComponent implements OnInit {
   name=''; price=0; quantity=0; description='';
   myProducts: any[] = [];
-  allProducts: any[] = [];
+  totals: any = null;
+  lowStock: any[] = [];
   deleteProductId = '';
   deleteError = '';
   currentUserId: string | null = null;
@@ -70,22 +81,23 @@ export class SellerDashboardComponent implements OnInit {
   loadMyProducts() {
     const userId = this.auth.getUserId();
     this.currentUserId = userId;
-    
-    this.productService.listAll().subscribe(data => {
-      this.allProducts = data;
-      if (!userId) {
-        this.myProducts = [];
-        return;
-      }
-      
-      this.myProducts = data.filter((p: any) => {
-        return p.userId === userId;
-      });
-      
-      for (const p of this.myProducts) {
-        const pid = p.id || p._id;
-        this.media.byProduct(pid).subscribe(meds => p.images = meds, _ => p.images = []);
-      }
+    if (!userId) {
+      this.myProducts = [];
+      return;
+    }
+
+    this.productService.dashboard().subscribe(data => {
+      this.totals = data.totals;
+      this.lowStock = data.lowStock;
+      this.myProducts = data.products;
+
+      // only products that have images need the media lookup
+      const ids = this.myProducts.filter((p: any) => p.imageCount > 0).map((p: any) => p.id);
+      for (const p of this.myProducts) p.images = [];
+      if (!ids.length) return;
+      this.media.byProducts(ids).subscribe(
+        byId => { for (const p of this.myProducts) p.images = byId[p.id] || []; },
+        _ => {});
     });
   }
 
@@ -107,8 +119,14 @@ export class SellerDashboardComponent implements OnInit {
     const newName = prompt('Edit product name', p.name);
     if (!newName || newName === p.name) return;
     const id = p.id || p._id;
-    const body = { name: newName, price: p.price, quantity: p.quantity, description: p.description };
-    this.productService.update(id, body).subscribe({ next: () => { alert('Updated'); this.loadMyProducts(); }, error: () => alert('Update failed') });
+    this.productService.patch(id, { name: newName }, p.version).subscribe({
+      next: () => { alert('Updated'); this.loadMyProducts(); },
+      error: err => {
+        if (err.status !== 412) { alert('Update failed'); return; }
+        alert('Product was changed elsewhere, reloading');
+        this.loadMyProducts();
+      }
+    });
   }
 
   deleteSelected() {
@@ -6,14 +6,18 @@ export class MediaService {
   private base = 'http://localhost:8083/api/media';
   constructor(private http: HttpClient) {}
 
+  // Sends the file as the raw request body, which the server streams straight to disk.
   upload(file: File, productId: string) {
-    const form = new FormData();
-    form.append('file', file);
-    form.append('productId', productId);
-    return this.http.post(this.base + '/upload', form);
+    const headers = new HttpHeaders({ 'Content-Type': file.type || 'application/octet-stream' });
+    return this.http.post(this.base + '/upload', file, { headers, params: { productId } });
   }
 
   byProduct(productId: string) {
     return this.http.get<any[]>(`${this.base}/product/${productId}`);
   }
+
+  // One request for a whole grid: productId -> media list (empty when a product has none)
+  byProducts(productIds: string[]) {
+    return this.http.post<{ [productId: string]: any[] }>(`${this.base}/products`, productIds);
+  }
 }
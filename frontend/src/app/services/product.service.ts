@@ -1,14 +1,34 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
+import { map } from 'rxjs/operators';
 
 @Injectable({ providedIn: 'root' })
 export class ProductService {
   private base = 'http://localhost:8082/api/products';
   constructor(private http: HttpClient) {}
 
-  listAll() { return this.http.get<any[]>(this.base); }
+  // The listing is cursor-paginated; request the fields the list views render.
+  listPage(cursor?: string, limit = 100) {
+    const params: any = { limit, fields: 'name,price,quantity,userId,description' };
+    if (cursor) params.cursor = cursor;
+    return this.http.get<{ items: any[]; nextCursor?: string }>(this.base, { params });
+  }
+  listAll() { return this.listPage().pipe(map(page => page.items)); }
   getOne(id: string) { return this.http.get(this.base + '/' + id); }
+  getMany(ids: string[], fields?: string) {
+    return this.http.post<{ items: any[]; missing: string[] }>(this.base + '/batch', { ids, fields: fields ? fields.split(',') : undefined });
+  }
+  // Totals, low-stock items and products (with imageCount) for the signed-in seller, in one call.
+  dashboard(lowStock?: number) {
+    const params: any = lowStock != null ? { lowStock } : {};
+    return this.http.get<{ totals: any; lowStock: any[]; products: any[] }>(this.base + '/dashboard', { params });
+  }
   create(body: any) { return this.http.post(this.base, body); }
   update(id: string, body: any) { return this.http.put(this.base + '/' + id, body); }
+  // Sends only the changed fields; with a version the write fails (412) if someone else saved first.
+  patch(id: string, changes: any, version?: number) {
+    const headers: any = version != null ? { 'If-Match': `"${version}"` } : {};
+    return this.http.patch(this.base + '/' + id, changes, { headers });
+  }
   delete(id: string) { return this.http.delete(this.base + '/' + id); }
 }